@@ -0,0 +1,18 @@
+#!/usr/bin/env bash
+# Thin client for the gitlet daemon. Runs a gitlet command in the repository in the current
+# directory: through the daemon if one is serving it, otherwise in a new JVM.
+#
+# Usage: gitlet-client.sh <COMMAND> <OPERAND1> <OPERAND2> ...
+# Set GITLET_CLASSPATH to the folder holding the gitlet classes for running without a daemon.
+
+daemon_file=.gitlet/daemon
+
+if [ -r "$daemon_file" ] && { read -r port && read -r token; } < "$daemon_file" \
+        && { exec 3<>"/dev/tcp/127.0.0.1/$port"; } 2>/dev/null; then
+    # Each field of the request ends with a NUL byte: token, directory, argument count, arguments
+    printf '%s\0' "$token" "$PWD" "$#" "$@" >&3
+    cat <&3
+    exec 3<&-
+else
+    exec java -cp "${GITLET_CLASSPATH:-$(dirname "$0")}" gitlet.Main "$@"
+fi
@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A hand-written, versioned binary encoding for objects of one type, used in place of Java
+ * serialization so that reading an object costs no reflection or class descriptors.
+ *
+ * Every encoding starts with a magic byte, a byte naming the kind of object and a version byte.
+ * Since Java serialization streams start with a different byte, {@link #decode} can tell both
+ * apart, and repositories written before an object had a binary format stay readable.
+ * SHA-1 ids are written as their raw 20 bytes rather than 40 hexadecimal characters.
+ * @param <T> The type of object encoded
+ *
+ * @author Jordan Kilfoy
+ */
+public interface BinaryFormat<T extends Serializable> {
+
+    /** First byte of every binary encoding */
+    byte MAGIC = 'G';
+    /** First byte of every Java serialization stream */
+    byte SERIALIZATION_MAGIC = (byte) 0xAC;
+
+    /** Id tags: no id, a raw SHA-1 id, or any other string */
+    int EMPTY_ID = 0;
+    int RAW_ID = 1;
+    int STRING_ID = 2;
+
+    /** Writes the body of the object, after the header */
+    void write(T obj, DataOutputStream out) throws IOException;
+
+    /** Reads the body of an object written with the given version */
+    T read(int version, DataInputStream in) throws IOException;
+
+    /** The byte naming the kind of object this format encodes */
+    byte kind();
+
+    /** The version of the encoding written by this format */
+    byte version();
+
+    /** Returns the encoded form of the object */
+    default byte[] encode(T obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(MAGIC);
+            out.writeByte(kind());
+            out.writeByte(version());
+            write(obj, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the object decoded from its encoded form */
+    default T decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != MAGIC || in.readByte() != kind()) {
+                throw new IllegalArgumentException("not a " + (char) kind() + " object");
+            }
+            int version = in.readByte();
+            if (version < 1 || version > version()) {
+                throw new IllegalArgumentException("unsupported version " + version);
+            }
+            return read(version, in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the encoded form of the object, in the given format, or
+     * serialized if the format is null */
+    static <T extends Serializable> byte[] encode(BinaryFormat<T> format, T obj) {
+        return format == null ? Utils.serialize(obj) : format.encode(obj);
+    }
+
+    /** Returns the object decoded from bytes either in the given format, or
+     * serialized by Java serialization */
+    @SuppressWarnings("unchecked")
+    static <T extends Serializable> T decode(BinaryFormat<T> format, byte[] bytes, Class<? super T> type) {
+        if (format == null || bytes.length > 0 && bytes[0] == SERIALIZATION_MAGIC) {
+            return (T) type.cast(Utils.deserialize(bytes, Serializable.class));
+        }
+        return format.decode(bytes);
+    }
+
+    /** Writes an id, as its raw bytes if it is a SHA-1 id */
+    static void writeId(String id, DataOutputStream out) throws IOException {
+        if (id == null || id.isEmpty()) {
+            out.writeByte(EMPTY_ID);
+        } else if (Utils.isUid(id)) {
+            out.writeByte(RAW_ID);
+            out.write(Utils.hexToBytes(id));
+        } else {
+            out.writeByte(STRING_ID);
+            writeString(id, out);
+        }
+    }
+
+    /** Reads an id written by writeId; the empty string if there was none */
+    static String readId(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case EMPTY_ID:
+                return "";
+            case RAW_ID:
+                byte[] id = new byte[Utils.UID_LENGTH / 2];
+                in.readFully(id);
+                return Utils.bytesToHex(id);
+            case STRING_ID:
+                return readString(in);
+            default:
+                throw new IllegalArgumentException("corrupt id");
+        }
+    }
+
+    /** Writes a string of any length as its UTF-8 bytes, preceded by their count */
+    static void writeString(String s, DataOutputStream out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a string written by writeString */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
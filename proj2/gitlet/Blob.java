@@ -1,16 +1,35 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 
+import static gitlet.Main.CHUNKS;
 import static gitlet.Main.CWD;
+import static gitlet.Main.TRACKED_BLOBS;
 
 /**
  *  Represents a gitlet blob object, or a file tracked by a commit.
- *  This class contains a byte[] of the full contents of the file, as well as its name.
- *  A Blob is Digestable, and thus all its fields can be used to generate a SHA-1 digest.
+ *  Small files are held inline as a byte[] of their full contents. Files larger than
+ *  {@link Chunker#MAX_SIZE} are instead split into content-defined chunks stored in the chunks
+ *  folder, and the blob only holds the list of chunk ids, so that they can be hashed, stored and
+ *  written back to the CWD one chunk at a time, and so that versions of a file share the chunks
+ *  they have in common. Once tracked, an inline blob may also be stored as a delta against a
+ *  similar blob, usually the previous version of the same file.
+ *  A Blob is Digestable, and its digest is the SHA-1 hash of its contents followed by its name.
  *  A Blob is immutable; none of its fields can change after being created. This is to
  *  preserve the Digestable contract.
  *
@@ -18,15 +37,135 @@ import static gitlet.Main.CWD;
  */
 public class Blob implements Digestable, Serializable {
 
-    /** The message of this Commit. */
+    /** Kept from before blobs were chunked, so existing repositories can still be read */
+    private static final long serialVersionUID = -8564603887946395692L;
+
+    /** Blobs smaller than this are never deltified */
+    static final int MIN_DELTA_SIZE = 64;
+
+    /** The contents of this blob, if it is held inline. */
     private final byte[] contents;
 
-    /** The timestamp of this Commit. */
+    /** The name of the file this blob holds. */
     private final String name;
 
+    /** The ids of the chunks holding the contents of this blob, if it is chunked. */
+    private final ArrayList<String> chunkIds;
+
+    /** The id of the blob this blob is stored as a delta against, if it is deltified. */
+    private final String deltaBaseId;
+
+    /** The delta rebuilding this blob's contents from its base, if it is deltified. */
+    private final byte[] delta;
+
+    /** The number of deltas that must be applied to rebuild this blob's contents. */
+    private final int depth;
+
+    /** The size of the contents of this blob, if it is chunked or deltified. */
+    private final long size;
+
+    /** The SHA-1 digest of this blob; computed on first use if the blob is held inline. */
+    private String id;
+
     public Blob(byte[] contents, String name) {
         this.contents = contents;
         this.name = name;
+        this.chunkIds = null;
+        this.deltaBaseId = null;
+        this.delta = null;
+        this.depth = 0;
+        this.size = contents.length;
+    }
+
+    private Blob(String name, ArrayList<String> chunkIds, long size, String id) {
+        this.contents = null;
+        this.name = name;
+        this.chunkIds = chunkIds;
+        this.deltaBaseId = null;
+        this.delta = null;
+        this.depth = 0;
+        this.size = size;
+        this.id = id;
+    }
+
+    private Blob(String name, String deltaBaseId, byte[] delta, int depth, long size, String id) {
+        this.contents = null;
+        this.name = name;
+        this.chunkIds = null;
+        this.deltaBaseId = deltaBaseId;
+        this.delta = delta;
+        this.depth = depth;
+        this.size = size;
+        this.id = id;
+    }
+
+    /**
+     * Returns the digest a blob of the given file would have, reading the file in fixed-size
+     * pieces without storing anything.
+     */
+    public static String digestFile(File file, String name) {
+        MessageDigest md = Utils.sha1Digest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Chunker.MAX_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        return Utils.bytesToHex(md.digest());
+    }
+
+    /**
+     * Creates a blob holding the contents of the given file, reading it one chunk at a time.
+     * Files larger than the largest chunk are split into content-defined chunks by the
+     * {@link Chunker}, each persisted as it is read, so memory use is bounded by the chunk size
+     * regardless of the size of the file. Chunks already in the store are shared, not rewritten.
+     * @param file The file to read
+     * @param name The name of the blob
+     * @return A blob holding the contents of the file
+     */
+    public static Blob fromFile(File file, String name) {
+        if (file.length() <= Chunker.MAX_SIZE) {
+            return new Blob(Utils.readContents(file), name);
+        }
+        CHUNKS.getFolder().mkdir();
+        MessageDigest md = Utils.sha1Digest();
+        ArrayList<String> chunkIds = new ArrayList<>();
+        long[] size = new long[1];
+        Chunker.split(file, data -> {
+            md.update(data);
+            size[0] += data.length;
+            Chunk chunk = new Chunk(data);
+            CHUNKS.persist(chunk);
+            chunkIds.add(chunk.digest());
+        });
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        return new Blob(name, chunkIds, size[0], Utils.bytesToHex(md.digest()));
+    }
+
+    /**
+     * Returns this blob stored as a delta against the given base, when that is worthwhile.
+     * Only inline blobs are deltified, against bases that are not chunked, and only if the delta
+     * is at most half the size of the contents and the base's own delta chain is shorter than
+     * maxDepth, which bounds the number of deltas applied to rebuild any blob's contents.
+     * @param base The blob to store this blob as a delta against
+     * @param maxDepth The longest delta chain allowed
+     * @return A deltified copy of this blob with the same digest, or this blob itself
+     */
+    public Blob deltify(Blob base, int maxDepth) {
+        if (contents == null || contents.length < MIN_DELTA_SIZE
+                || base.isChunked() || base.depth >= maxDepth || base.digest().equals(digest())) {
+            return this;
+        }
+        byte[] newDelta = Delta.create(base.getContents(), contents);
+        if (newDelta.length > contents.length / 2) {
+            return this;
+        }
+        return new Blob(name, base.digest(), newDelta, base.depth + 1, contents.length, digest());
     }
 
     /**
@@ -34,24 +173,159 @@ public class Blob implements Digestable, Serializable {
      * creating it if it doesn't exist, and overwriting if it does.
      */
     public void addToCWD() {
-        Utils.writeContents(Utils.join(CWD, name), contents);
+        writeTo(Utils.join(CWD, name));
+    }
+
+    /**
+     * Writes the contents of this blob into the given file, creating it and its parent folders
+     * if they don't exist, and overwriting it if it does. Chunked blobs are written one chunk at a time.
+     */
+    public void writeTo(File file) {
+        file.getParentFile().mkdirs();
+        if (!isChunked()) {
+            Utils.writeContents(file, getContents());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (String chunkId : chunkIds) {
+                ByteBuffer buffer = ByteBuffer.wrap(CHUNKS.read(chunkId).getData());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
     }
 
     // Getters
 
+    /** Returns the full contents of this blob, reassembling its chunks if it is chunked,
+     * or applying its delta to its base's contents if it is deltified */
     public byte[] getContents() {
-        return contents;
+        if (isDelta()) {
+            return Delta.apply(TRACKED_BLOBS.read(deltaBaseId).getContents(), delta);
+        }
+        if (!isChunked()) {
+            return contents;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String chunkId : chunkIds) {
+            out.writeBytes(CHUNKS.read(chunkId).getData());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns a stream of this blob's contents. The chunks of a chunked blob are read one at a
+     * time as the stream reaches them, so its contents are never held in memory all at once.
+     */
+    public InputStream newInputStream() {
+        if (!isChunked()) {
+            return new ByteArrayInputStream(getContents());
+        }
+        Iterator<String> chunks = chunkIds.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return new ByteArrayInputStream(CHUNKS.read(chunks.next()).getData());
+            }
+        });
     }
 
     public String getName() {
         return name;
     }
 
+    /** Returns the size of this blob's contents in bytes */
+    public long getSize() {
+        return contents == null ? size : contents.length;
+    }
+
+    /** Returns the number of bytes this blob's contents take in the blob itself;
+     * the delta if it is deltified, and nothing if it is chunked */
+    public long getStoredSize() {
+        if (isDelta()) {
+            return delta.length;
+        }
+        return contents == null ? 0 : contents.length;
+    }
+
+    /** Returns true if this blob's contents are stored in chunks rather than inline */
+    public boolean isChunked() {
+        return chunkIds != null;
+    }
+
+    /** Returns true if this blob is stored as a delta against another blob */
+    public boolean isDelta() {
+        return delta != null;
+    }
+
+    /** Returns the id of the blob this blob is stored as a delta against, or null if it is not deltified */
+    public String getDeltaBaseId() {
+        return deltaBaseId;
+    }
+
+    /** Returns the ids of the chunks holding this blob's contents; empty if it is held inline */
+    public List<String> getChunkIds() {
+        return chunkIds == null ? List.of() : chunkIds;
+    }
+
+    /** Returns the SHA-1 hash of this blob's contents followed by its name, computed from its
+     * contents, delta or chunks as stored, bypassing the cache, rather than taken from the
+     * digest stored with it */
+    public String computeDigest() {
+        MessageDigest md = Utils.sha1Digest();
+        if (isChunked()) {
+            for (String chunkId : chunkIds) {
+                md.update(readStoredChunk(chunkId).getData());
+            }
+        } else {
+            md.update(getStoredContents());
+        }
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        return Utils.bytesToHex(md.digest());
+    }
+
+    /** Returns the full contents of this blob like {@link #getContents()}, but reading its delta
+     * base and chunks as stored, bypassing the cache */
+    private byte[] getStoredContents() {
+        if (isDelta()) {
+            Blob base = TRACKED_BLOBS.readStored(deltaBaseId);
+            if (base == null) {
+                throw new IllegalArgumentException("missing delta base " + deltaBaseId);
+            }
+            return Delta.apply(base.getStoredContents(), delta);
+        }
+        if (!isChunked()) {
+            return contents;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String chunkId : chunkIds) {
+            out.writeBytes(readStoredChunk(chunkId).getData());
+        }
+        return out.toByteArray();
+    }
+
+    private static Chunk readStoredChunk(String chunkId) {
+        Chunk chunk = CHUNKS.readStored(chunkId);
+        if (chunk == null) {
+            throw new IllegalArgumentException("missing chunk " + chunkId);
+        }
+        return chunk;
+    }
+
     @Override
     public String digest() {
-        List<String> stringsToHash = new ArrayList<>();
-        stringsToHash.add(new String(contents, StandardCharsets.UTF_8));
-        stringsToHash.add(name);
-        return Utils.sha1(stringsToHash.toArray(new String[0]));
+        if (id == null) {
+            id = Utils.sha1(contents, name);
+        }
+        return id;
     }
 }
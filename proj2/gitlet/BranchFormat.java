@@ -0,0 +1,37 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static gitlet.BinaryFormat.*;
+
+/**
+ * Binary format of a Branch: its name, then the id of the commit it points to.
+ *
+ * @author Jordan Kilfoy
+ */
+public class BranchFormat implements BinaryFormat<Branch> {
+
+    @Override
+    public byte kind() {
+        return 'b';
+    }
+
+    @Override
+    public byte version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Branch branch, DataOutputStream out) throws IOException {
+        writeString(branch.getName(), out);
+        writeId(branch.getCommitId(), out);
+    }
+
+    @Override
+    public Branch read(int version, DataInputStream in) throws IOException {
+        String name = readString(in);
+        return new Branch(name, readId(in));
+    }
+}
@@ -0,0 +1,39 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/**
+ *  Represents a chunk of a large file's contents.
+ *  Blobs of large files are stored as a list of chunk ids rather than as one byte[],
+ *  so that they can be hashed, stored and restored a chunk at a time.
+ *  A Chunk is Digestable, and is identified by the SHA-1 digest of its data.
+ *
+ *  @author Jordan Kilfoy
+ */
+public class Chunk implements Digestable, Serializable {
+
+    /** Pinned, so chunks written by Java serialization stay readable after recompiling */
+    private static final long serialVersionUID = -4536833114469741335L;
+
+    /** The data in this chunk */
+    private final byte[] data;
+
+    /** The digest of the data; computed on first use */
+    private transient String id;
+
+    public Chunk(byte[] data) {
+        this.data = data;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String digest() {
+        if (id == null) {
+            id = Utils.sha1(data);
+        }
+        return id;
+    }
+}
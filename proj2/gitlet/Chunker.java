@@ -0,0 +1,80 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Splits a stream of bytes into content-defined chunks, using a gear rolling hash.
+ *
+ * After every byte, the hash is shifted left and the byte's entry in a fixed table of
+ * random values is added, so the hash only depends on the last 64 bytes read. A chunk
+ * ends wherever the top bits of the hash are all zero, which happens on average every
+ * {@link #AVG_SIZE} bytes. Because boundaries depend only on nearby content, an edit to a
+ * file only changes the chunks around it; every other chunk keeps its id, and is shared
+ * with the previous versions of the file in the chunk store.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Chunker {
+
+    /** Chunks are never smaller than this, except at the end of the stream */
+    public static final int MIN_SIZE = 2 * 1024;
+    /** The average size of a chunk */
+    public static final int AVG_SIZE = 8 * 1024;
+    /** Chunks are never larger than this */
+    public static final int MAX_SIZE = 64 * 1024;
+
+    /** A boundary is found when these top bits of the hash are all zero */
+    private static final long MASK = (long) (AVG_SIZE - 1) << (Long.SIZE - Integer.numberOfTrailingZeros(AVG_SIZE));
+    /** Random values added to the hash for each byte value. The seed must never change,
+     * or chunks would no longer be shared with those already stored */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x61B5EED);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Splits the contents of the file into chunks, passing each one to the consumer in order */
+    public static void split(File file, Consumer<byte[]> consumer) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            split(channel, consumer);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Splits the bytes read from the channel into chunks, passing each one to the consumer in order */
+    public static void split(ReadableByteChannel channel, Consumer<byte[]> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_SIZE);
+        byte[] chunk = new byte[MAX_SIZE];
+        int length = 0;
+        long hash = 0;
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                chunk[length++] = b;
+                hash = (hash << 1) + GEAR[b & 0xff];
+                if (length >= MIN_SIZE && (hash & MASK) == 0 || length == MAX_SIZE) {
+                    consumer.accept(Arrays.copyOf(chunk, length));
+                    length = 0;
+                    hash = 0;
+                }
+            }
+            buffer.clear();
+        }
+        if (length > 0) {
+            consumer.accept(Arrays.copyOf(chunk, length));
+        }
+    }
+}
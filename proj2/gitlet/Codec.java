@@ -0,0 +1,23 @@
+package gitlet;
+
+/**
+ * A compression codec for the stored bytes of objects.
+ * Each codec has a unique tag, which {@link Codecs} writes in front of every object it encodes,
+ * so that the codec used can be detected when the object is read back.
+ *
+ * @author Jordan Kilfoy
+ */
+public interface Codec {
+
+    /** Returns the tag identifying this codec in stored objects */
+    byte tag();
+
+    /** Returns the name of this codec, as used in the config file */
+    String name();
+
+    /** Returns the encoded form of the data */
+    byte[] encode(byte[] data);
+
+    /** Returns the data decoded from the given range of the encoded bytes */
+    byte[] decode(byte[] encoded, int offset, int length);
+}
@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the codecs objects can be stored with, which tags and untags stored objects.
+ *
+ * Every stored object starts with the tag of the codec that encoded it, followed by the encoded
+ * bytes, so that reads detect the codec on their own and objects written with different codecs
+ * can live side by side. Objects written before codecs existed start with the Java serialization
+ * magic number instead of a tag, and are read back as they are.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Codecs {
+
+    /** Codec storing data as is */
+    public static final Codec NONE = new Codec() {
+        @Override
+        public byte tag() {
+            return 0;
+        }
+
+        @Override
+        public String name() {
+            return "none";
+        }
+
+        @Override
+        public byte[] encode(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decode(byte[] encoded, int offset, int length) {
+            return Arrays.copyOfRange(encoded, offset, offset + length);
+        }
+    };
+
+    /** The name of the codec objects are stored with */
+    public static final String CODEC = "compression.codec";
+    /** The compression level used by the deflate codec */
+    public static final String LEVEL = "compression.level";
+    public static final int DEFAULT_LEVEL = 1;
+
+    /** First byte of every Java serialization stream, which is never used as a tag */
+    private static final byte SERIALIZATION_MAGIC = (byte) 0xAC;
+
+    /** Maps tags to the codecs that decode them */
+    private static final Map<Byte, Codec> CODECS = new HashMap<>();
+
+    static {
+        register(NONE);
+        register(new DeflateCodec(DEFAULT_LEVEL));
+    }
+
+    /** Registers a codec, so objects tagged with it can be decoded */
+    public static void register(Codec codec) {
+        if (codec.tag() == SERIALIZATION_MAGIC) {
+            throw new IllegalArgumentException("tag is reserved for untagged objects");
+        }
+        CODECS.put(codec.tag(), codec);
+    }
+
+    /** Returns the codec the repository's config selects for new objects */
+    public static Codec fromConfig() {
+        String name = Config.get(CODEC);
+        if (name == null || name.equals("deflate")) {
+            return new DeflateCodec(Config.getInt(LEVEL, DEFAULT_LEVEL));
+        }
+        for (Codec codec : CODECS.values()) {
+            if (codec.name().equals(name)) {
+                return codec;
+            }
+        }
+        throw Utils.error("Unknown compression codec: %s", name);
+    }
+
+    /** Returns the data encoded by the codec and tagged with it, or tagged
+     * as stored uncompressed if the codec does not make it any smaller */
+    public static byte[] encode(Codec codec, byte[] data) {
+        byte[] encoded = codec.encode(data);
+        if (codec != NONE && encoded.length >= data.length) {
+            codec = NONE;
+            encoded = data;
+        }
+        byte[] stored = new byte[encoded.length + 1];
+        stored[0] = codec.tag();
+        System.arraycopy(encoded, 0, stored, 1, encoded.length);
+        return stored;
+    }
+
+    /** Returns the data of a stored object, decoded with the codec it is tagged with */
+    public static byte[] decode(byte[] stored) {
+        if (stored.length > 0 && stored[0] == SERIALIZATION_MAGIC) {
+            return stored;
+        }
+        Codec codec = stored.length == 0 ? null : CODECS.get(stored[0]);
+        if (codec == null) {
+            throw new IllegalArgumentException("unknown codec tag");
+        }
+        return codec.decode(stored, 1, stored.length - 1);
+    }
+}
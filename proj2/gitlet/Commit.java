@@ -2,16 +2,14 @@ package gitlet;
 
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
 
-import static gitlet.Main.COMMITS;
-
 /**
  *  Represents a gitlet commit object.
  *  This class contains all meta data pertinent to the commit, including its message,
- *  its timestamp, its parent's id, and a map of filenames to the ids of blobs that hold them.
+ *  its timestamp, its parent's id, and the id of the {@link Tree} holding the files it tracks.
+ *  Commits made before trees existed instead hold a flat map of filenames to the ids of the
+ *  blobs that hold them, which is kept so that their ids do not change.
  *  A commit is Digestable, and thus all its fields can be used to generate a SHA-1 digest.
  *  A commit is immutable; none of its fields can change after being created. This is to
  *  preserve the Digestable contract.
@@ -21,6 +19,9 @@ import static gitlet.Main.COMMITS;
 // TODO : merge commit
 public class Commit implements Digestable, Serializable {
 
+    /** Kept from before commits held trees, so existing repositories can still be read */
+    private static final long serialVersionUID = -2808770114418679919L;
+
     private static final SimpleDateFormat formatter = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z", Locale.US);
 
     /** The message of this Commit. */
@@ -33,15 +34,16 @@ public class Commit implements Digestable, Serializable {
     private final String parentId;
     private final String secondParentId;
 
-    /** Maps the name of each file in the commit to the corresponding blob id */
-    private final TreeMap<String, String> blobs;
+    /** Maps the name of each file in the commit to the corresponding blob id, if this
+     * commit holds a flat map of its files rather than a tree; otherwise lazily flattened
+     * from the tree */
+    private TreeMap<String, String> blobs;
+
+    /** The id of the tree holding the files of this commit, or null if it holds a flat map */
+    private final String treeId;
 
     public Commit(String message, Date timestamp, String parentId, TreeMap<String, String> blobs) {
-        this.message = message;
-        this.timestamp = timestamp;
-        this.parentId = parentId;
-        this.secondParentId = "";
-        this.blobs = blobs;
+        this(message, timestamp, parentId, "", blobs);
     }
 
     public Commit(String message, Date timestamp, String parentId, String secondParentId,
@@ -51,37 +53,25 @@ public class Commit implements Digestable, Serializable {
         this.parentId = parentId;
         this.secondParentId = secondParentId == null ? "" : secondParentId;
         this.blobs = blobs;
+        this.treeId = null;
     }
 
-    /** Returns a set of all ancestors of this commit, including itself */
-    public Set<Commit> getAllAncestors() {
-        Set<Commit> ancestors = new HashSet<Commit>();
-        List<Commit> trails = new LinkedList<>();
-        trails.add(this);
-        while (!trails.isEmpty()) {
-            List<Commit> next = new LinkedList<>();
-            for (Commit trailHead : trails) {
-                if (!ancestors.contains(trailHead)) {
-                    // add the commit to ancestors, then add each parent to trails
-                    ancestors.add(trailHead);
-                    Commit firstParent = COMMITS.read(trailHead.getParentId());
-                    if (firstParent != null) {
-                        next.add(firstParent);
-                    }
-                    Commit secondParent = COMMITS.read(trailHead.getSecondParentId());
-                    if (secondParent != null) {
-                        next.add(secondParent);
-                    }
-                }
-            }
-            trails = next;
-        }
-        return ancestors;
+    public Commit(String message, Date timestamp, String parentId, String secondParentId, String treeId) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.parentId = parentId;
+        this.secondParentId = secondParentId == null ? "" : secondParentId;
+        this.blobs = null;
+        this.treeId = treeId;
     }
 
     public String toString() {
-        ZonedDateTime zdt = ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault());
-        return "commit " + digest() + System.lineSeparator() +
+        return format(digest(), parentId, secondParentId, timestamp, message);
+    }
+
+    /** Returns the log entry of the commit with the given id and fields, as printed by log */
+    static String format(String id, String parentId, String secondParentId, Date timestamp, String message) {
+        return "commit " + id + System.lineSeparator() +
                 (!"".equals(secondParentId) ?
                         "Merge: " + shorten(parentId) + " " + shorten(secondParentId) + System.lineSeparator()
                         : ""
@@ -109,10 +99,49 @@ public class Commit implements Digestable, Serializable {
         return secondParentId;
     }
 
+    /** Returns a map of the path of every file in this commit to its blob id. For commits
+     * holding a tree, the map is built on first use by reading the tree and its subtrees */
     public TreeMap<String, String> getBlobs() {
+        if (blobs == null) {
+            blobs = Tree.flatten(treeId);
+        }
         return blobs;
     }
 
+    /** Returns the id of the tree holding the files of this commit, or null if it holds a flat map */
+    public String getTreeId() {
+        return treeId;
+    }
+
+    /** Returns true if this commit holds its files in a tree */
+    public boolean hasTree() {
+        return treeId != null;
+    }
+
+    /**
+     * Returns the files that differ between this commit and another, reading only the
+     * subtrees that differ when both commits hold trees.
+     * @return Maps the path of each file added or modified in the other commit to its blob
+     *         id there, and of each file removed from it to null
+     */
+    public TreeMap<String, String> diff(Commit other) {
+        if (hasTree() && other.hasTree()) {
+            return Tree.diff(treeId, other.treeId);
+        }
+        TreeMap<String, String> changes = new TreeMap<>();
+        for (String filename : getBlobs().keySet()) {
+            if (!other.getBlobs().containsKey(filename)) {
+                changes.put(filename, null);
+            }
+        }
+        for (Map.Entry<String, String> entry : other.getBlobs().entrySet()) {
+            if (!entry.getValue().equals(getBlobs().get(entry.getKey()))) {
+                changes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changes;
+    }
+
     @Override
     public String digest() {
         List<String> stringsToHash = new ArrayList<>();
@@ -120,7 +149,7 @@ public class Commit implements Digestable, Serializable {
         stringsToHash.add(timestamp.toString());
         stringsToHash.add(parentId);
         stringsToHash.add(secondParentId);
-        stringsToHash.add(blobs.toString());
+        stringsToHash.add(hasTree() ? "tree " + treeId : blobs.toString());
         return Utils.sha1(stringsToHash.toArray(new String[0]));
     }
 
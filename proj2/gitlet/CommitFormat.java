@@ -0,0 +1,66 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.BinaryFormat.*;
+
+/**
+ * Binary format of a Commit: its message, its timestamp in milliseconds and its two parent ids.
+ * In version 2, these are followed by a byte telling whether the commit holds a tree, then
+ * either its tree id or its flat map of files. Version 1 commits always hold a flat map,
+ * written as the number of tracked files followed by each file's name and blob id.
+ *
+ * @author Jordan Kilfoy
+ */
+public class CommitFormat implements BinaryFormat<Commit> {
+
+    @Override
+    public byte kind() {
+        return 'c';
+    }
+
+    @Override
+    public byte version() {
+        return 2;
+    }
+
+    @Override
+    public void write(Commit commit, DataOutputStream out) throws IOException {
+        writeString(commit.getMessage(), out);
+        out.writeLong(commit.getTimestamp().getTime());
+        writeId(commit.getParentId(), out);
+        writeId(commit.getSecondParentId(), out);
+        out.writeBoolean(commit.hasTree());
+        if (commit.hasTree()) {
+            writeId(commit.getTreeId(), out);
+            return;
+        }
+        out.writeInt(commit.getBlobs().size());
+        for (Map.Entry<String, String> entry : commit.getBlobs().entrySet()) {
+            writeString(entry.getKey(), out);
+            writeId(entry.getValue(), out);
+        }
+    }
+
+    @Override
+    public Commit read(int version, DataInputStream in) throws IOException {
+        String message = readString(in);
+        Date timestamp = new Date(in.readLong());
+        String parentId = readId(in);
+        String secondParentId = readId(in);
+        if (version >= 2 && in.readBoolean()) {
+            return new Commit(message, timestamp, parentId, secondParentId, readId(in));
+        }
+        TreeMap<String, String> blobs = new TreeMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String filename = readString(in);
+            blobs.put(filename, readId(in));
+        }
+        return new Commit(message, timestamp, parentId, secondParentId, blobs);
+    }
+}
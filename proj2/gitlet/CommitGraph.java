@@ -0,0 +1,363 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+import static gitlet.Utils.*;
+
+/**
+ * A persistent graph of the commits in a repository, so that ancestry can be walked without
+ * reading any commit from the commit store.
+ *
+ * The graph file starts with a magic number, followed by one fixed-size entry per commit:
+ * its raw 20-byte id, the positions of its two parents in the file (-1 for none), its
+ * generation number and its timestamp. A commit's generation is one more than the largest
+ * generation of its parents, so a commit can only reach commits of a lower generation.
+ * Parents are always written before their children, which lets new commits be appended.
+ * Commits missing from the graph are added, along with their missing ancestors, the first
+ * time they are looked up; if the file does not exist, it is rebuilt from the branch heads.
+ *
+ * @author Jordan Kilfoy
+ */
+public class CommitGraph {
+
+    /** Magic number at the start of every commit graph */
+    static final int MAGIC = 0x43475048; // "CGPH"
+    /** Length of the header: the magic number */
+    static final int HEADER = 4;
+    /** Length of an entry: id, two parent positions, generation and timestamp */
+    static final int ENTRY = PackFile.ID_BYTES + 4 + 4 + 4 + 8;
+    /** Position of a missing parent */
+    static final int NONE = -1;
+
+    /** Flags marking the commits reached during a merge base walk */
+    private static final int FROM_FIRST = 1;
+    private static final int FROM_SECOND = 2;
+    private static final int STALE = 4;
+    private static final int RESULT = 8;
+    /** Flags a commit waiting in the queue of a merge base walk */
+    private static final int QUEUED = 16;
+
+    /** The graph file */
+    private final File file;
+    /** The commits, read when adding commits missing from the graph */
+    private final ObjectStore<Commit> commits;
+    /** Lists the commit ids of the branch heads, used to rebuild a missing graph */
+    private final Supplier<List<String>> heads;
+
+    /** Position of each commit in the graph; lazily loaded */
+    private HashMap<String, Integer> positions;
+    private List<String> ids;
+    private int[] firstParents;
+    private int[] secondParents;
+    private int[] generations;
+    private long[] timestamps;
+
+    public CommitGraph(File file, ObjectStore<Commit> commits, Supplier<List<String>> heads) {
+        this.file = file;
+        this.commits = commits;
+        this.heads = heads;
+    }
+
+    /** Drops the loaded graph if another process may have added to or rebuilt it since,
+     * so it is read again when next used */
+    public synchronized void refresh() {
+        if (positions != null && file.length() != HEADER + (long) ids.size() * ENTRY) {
+            positions = null;
+        }
+    }
+
+    /** Deletes the graph file, so it is rebuilt from the branch heads when next used; after
+     * commits are deleted, so the graph no longer names them */
+    public synchronized void rebuild() {
+        file.delete();
+        positions = null;
+    }
+
+    /** Adds the commit to the graph; its parents must already be stored */
+    public synchronized void add(Commit commit) {
+        load();
+        for (String parentId : parentIds(commit)) {
+            position(parentId);
+        }
+        add(commit.digest(), commit);
+    }
+
+    /** Returns true if the commit with the given id is in the graph */
+    public synchronized boolean contains(String id) {
+        load();
+        return positions.containsKey(id);
+    }
+
+    /** Returns the generation number of the commit with the given id */
+    public synchronized int generation(String id) {
+        int position = position(id);
+        return generations[position];
+    }
+
+    /** Returns true if the first commit is the second or one of its ancestors */
+    public synchronized boolean isAncestor(String ancestorId, String id) {
+        int ancestor = position(ancestorId);
+        return reaches(position(id), ancestor);
+    }
+
+    /**
+     * Returns the best common ancestors of two commits: the common ancestors that are not
+     * ancestors of another common ancestor. Histories with criss-cross merges have several.
+     * Commits are walked from both sides in decreasing generation order, painting each with
+     * the sides that reach it; a commit painted by both is a common ancestor, and everything
+     * below it is marked stale. The walk stops as soon as only stale commits remain, so it
+     * never visits history older than the merge bases. A commit is queued at most once while
+     * waiting, and the non-stale commits waiting are counted as they are queued, painted stale
+     * and taken, so checking for them costs nothing.
+     */
+    public synchronized List<String> mergeBases(String firstId, String secondId) {
+        int first = position(firstId);
+        int second = position(secondId);
+        if (first == second) {
+            return List.of(firstId);
+        }
+        HashMap<Integer, Integer> flags = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>(byGeneration());
+        flags.put(first, FROM_FIRST | QUEUED);
+        flags.put(second, FROM_SECOND | QUEUED);
+        queue.add(first);
+        queue.add(second);
+        int nonStale = 2;
+        List<Integer> results = new ArrayList<>();
+
+        while (nonStale > 0) {
+            int commit = queue.poll();
+            int commitFlags = flags.get(commit) & ~QUEUED;
+            flags.put(commit, commitFlags);
+            if ((commitFlags & STALE) == 0) {
+                nonStale--;
+            }
+            int paint = commitFlags & (FROM_FIRST | FROM_SECOND | STALE);
+            if (paint == (FROM_FIRST | FROM_SECOND)) {
+                if ((commitFlags & RESULT) == 0) {
+                    flags.put(commit, commitFlags | RESULT);
+                    results.add(commit);
+                }
+                paint |= STALE;
+            }
+            for (int parent : new int[] {firstParents[commit], secondParents[commit]}) {
+                if (parent == NONE) continue;
+                int parentFlags = flags.getOrDefault(parent, 0);
+                if ((parentFlags & paint) == paint) continue;
+                int newFlags = parentFlags | paint;
+                if ((parentFlags & QUEUED) == 0) {
+                    // Its flags are read when it is taken, so a waiting commit is only repainted
+                    queue.add(parent);
+                    newFlags |= QUEUED;
+                    if ((newFlags & STALE) == 0) nonStale++;
+                } else if ((parentFlags & STALE) == 0 && (newFlags & STALE) != 0) {
+                    nonStale--;
+                }
+                flags.put(parent, newFlags);
+            }
+        }
+
+        // A result found before a later one reached it may still be its ancestor
+        List<String> bases = new ArrayList<>();
+        for (int result : results) {
+            boolean redundant = false;
+            for (int other : results) {
+                if (other != result && reaches(other, result)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                bases.add(ids.get(result));
+            }
+        }
+        return bases;
+    }
+
+    /** Returns the latest common ancestor of two commits; if there are several best common
+     * ancestors, the one with the highest generation, then the latest timestamp */
+    public synchronized String mergeBase(String firstId, String secondId) {
+        List<String> bases = mergeBases(firstId, secondId);
+        if (bases.isEmpty()) {
+            return null;
+        }
+        return bases.stream()
+                .map(this::position)
+                .min(byGeneration().thenComparing(position -> ids.get(position)))
+                .map(ids::get)
+                .get();
+    }
+
+    /** Orders positions by decreasing generation, then decreasing timestamp */
+    private Comparator<Integer> byGeneration() {
+        return Comparator.<Integer>comparingInt(position -> -generations[position])
+                .thenComparingLong(position -> -timestamps[position]);
+    }
+
+    /** Returns true if the commit at the given position reaches the target position */
+    private boolean reaches(int from, int target) {
+        int targetGeneration = generations[target];
+        boolean[] seen = new boolean[ids.size()];
+        List<Integer> stack = new ArrayList<>(List.of(from));
+        while (!stack.isEmpty()) {
+            int commit = stack.remove(stack.size() - 1);
+            if (commit == target) return true;
+            if (seen[commit] || generations[commit] <= targetGeneration) continue;
+            seen[commit] = true;
+            if (firstParents[commit] != NONE) stack.add(firstParents[commit]);
+            if (secondParents[commit] != NONE) stack.add(secondParents[commit]);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position of the commit with the given id, adding it if it is missing.
+     * Missing ancestors are added parents first, by a post-order walk with an explicit stack
+     * rather than by recursion, since a graph rebuilt from a long history would otherwise
+     * overflow the call stack.
+     */
+    private int position(String id) {
+        load();
+        Integer position = positions.get(id);
+        if (position != null) {
+            return position;
+        }
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        HashMap<String, Commit> waiting = new HashMap<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String next = stack.peek();
+            if (positions.containsKey(next)) {
+                stack.pop();
+                continue;
+            }
+            Commit commit = waiting.get(next);
+            if (commit == null) {
+                commit = commits.read(next);
+                if (commit == null) {
+                    throw new IllegalArgumentException("no commit " + next);
+                }
+                waiting.put(next, commit);
+            }
+            boolean parentsAdded = true;
+            for (String parentId : parentIds(commit)) {
+                if (!positions.containsKey(parentId)) {
+                    stack.push(parentId);
+                    parentsAdded = false;
+                }
+            }
+            if (parentsAdded) {
+                stack.pop();
+                waiting.remove(next);
+                add(next, commit);
+            }
+        }
+        return positions.get(id);
+    }
+
+    /** Returns the ids of the commit's parents, leaving out missing ones */
+    private static List<String> parentIds(Commit commit) {
+        List<String> parentIds = new ArrayList<>(2);
+        if (!commit.getParentId().isEmpty()) parentIds.add(commit.getParentId());
+        if (!commit.getSecondParentId().isEmpty()) parentIds.add(commit.getSecondParentId());
+        return parentIds;
+    }
+
+    /** Appends the commit to the graph; its parents must already be in the graph */
+    private int add(String id, Commit commit) {
+        Integer existing = positions.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int firstParent = commit.getParentId().isEmpty() ? NONE : positions.get(commit.getParentId());
+        int secondParent = commit.getSecondParentId().isEmpty() ? NONE : positions.get(commit.getSecondParentId());
+        int generation = 1;
+        for (int parent : new int[] {firstParent, secondParent}) {
+            if (parent != NONE) {
+                generation = Math.max(generation, generations[parent] + 1);
+            }
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY);
+        entry.put(hexToBytes(id));
+        entry.putInt(firstParent);
+        entry.putInt(secondParent);
+        entry.putInt(generation);
+        entry.putLong(commit.getTimestamp().getTime());
+        entry.flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.APPEND)) {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return append(id, firstParent, secondParent, generation, commit.getTimestamp().getTime());
+    }
+
+    /** Adds an entry to the in-memory graph, returning its position */
+    private int append(String id, int firstParent, int secondParent, int generation, long timestamp) {
+        int position = ids.size();
+        if (position == generations.length) {
+            int capacity = Math.max(16, position * 2);
+            firstParents = Arrays.copyOf(firstParents, capacity);
+            secondParents = Arrays.copyOf(secondParents, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+        ids.add(id);
+        positions.put(id, position);
+        firstParents[position] = firstParent;
+        secondParents[position] = secondParent;
+        generations[position] = generation;
+        timestamps[position] = timestamp;
+        return position;
+    }
+
+    /** Reads the graph file, rebuilding it first from the branch heads if it does not exist */
+    private void load() {
+        if (positions != null) return;
+        positions = new HashMap<>();
+        ids = new ArrayList<>();
+        firstParents = new int[0];
+        secondParents = new int[0];
+        generations = new int[0];
+        timestamps = new long[0];
+        if (!file.exists()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC);
+            writeContents(file, header.array());
+            for (String head : heads.get()) {
+                position(head);
+            }
+            return;
+        }
+        ByteBuffer contents = ByteBuffer.wrap(readContents(file));
+        if (contents.limit() < HEADER || contents.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a commit graph: " + file);
+        }
+        byte[] id = new byte[PackFile.ID_BYTES];
+        while (contents.remaining() >= ENTRY) {
+            contents.get(id);
+            append(bytesToHex(id), contents.getInt(), contents.getInt(), contents.getInt(), contents.getLong());
+        }
+        // Drop an entry left partly written by an interrupted command, so appends stay aligned
+        if (contents.hasRemaining()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(contents.position());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterates over a commit and its first parents, newest first, reading each commit on a
+ * background thread while the caller is still handling the ones before it. At most
+ * {@link #PREFETCH} commits are read ahead of the caller, so memory use does not grow with
+ * the length of the history.
+ *
+ * The walk ends at the initial commit, after a given number of commits, or at the first
+ * commit older than a given time. Closing the walker stops the background thread.
+ *
+ * @author Jordan Kilfoy
+ */
+public class CommitWalker implements Iterator<Commit>, AutoCloseable {
+
+    /** The most commits read ahead of the caller */
+    static final int PREFETCH = 64;
+
+    /** Marks the end of the walk in the queue */
+    private static final Object END = new Object();
+
+    /** Commits read ahead, followed by END or the exception that ended the walk */
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(PREFETCH);
+    /** The thread reading commits */
+    private final Thread reader;
+    /** The next item taken from the queue, or null if it has not been taken yet */
+    private Object next;
+
+    /**
+     * Starts walking the first parents of a commit.
+     * @param commits The store to read commits from
+     * @param startId The id of the first commit returned
+     * @param maxCount The most commits returned
+     * @param since Commits older than this end the walk; null to walk to the initial commit
+     */
+    public CommitWalker(ObjectStore<Commit> commits, String startId, int maxCount, Date since) {
+        reader = new Thread(() -> walk(commits, startId, maxCount, since), "commit-walker");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void walk(ObjectStore<Commit> commits, String startId, int maxCount, Date since) {
+        Object last = END;
+        try {
+            String id = startId;
+            for (int count = 0; count < maxCount && !id.isEmpty(); count++) {
+                Commit commit = commits.read(id);
+                if (commit == null) {
+                    throw new IllegalArgumentException("no commit " + id);
+                }
+                if (since != null && commit.getTimestamp().before(since)) {
+                    break;
+                }
+                queue.put(commit);
+                id = commit.getParentId();
+            }
+        } catch (InterruptedException excp) {
+            return; // closed by the caller
+        } catch (RuntimeException excp) {
+            last = excp;
+        }
+        try {
+            queue.put(last);
+        } catch (InterruptedException excp) {
+            // closed by the caller
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while walking commits");
+            }
+        }
+        if (next instanceof RuntimeException) {
+            throw (RuntimeException) next;
+        }
+        return next != END;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Commit commit = (Commit) next;
+        next = null;
+        return commit;
+    }
+
+    /** Stops reading commits ahead */
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+}
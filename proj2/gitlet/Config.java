@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static gitlet.Main.GITLET_DIR;
+import static gitlet.Utils.*;
+
+/**
+ * Represents the configuration of the repository, stored as a properties file in `.gitlet/config`.
+ * Settings that are not in the file take their default values.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Config {
+
+    /** File containing the repository's settings */
+    public static final File CONFIG_FILE = join(GITLET_DIR, "config");
+
+    /** The longest chain of deltas a tracked blob may be stored as; 0 disables deltas */
+    public static final String DELTA_MAX_DEPTH = "delta.maxDepth";
+    public static final int DEFAULT_DELTA_MAX_DEPTH = 10;
+
+    /** Whether merge combines changes made to different lines of a file on both sides, rather
+     * than making any file changed on both sides a conflict */
+    public static final String MERGE_LINE_LEVEL = "merge.lineLevel";
+    public static final boolean DEFAULT_MERGE_LINE_LEVEL = true;
+
+    /** The repository's settings; lazily loaded from the config file */
+    private static Properties properties;
+
+    private static synchronized Properties getProperties() {
+        if (properties == null) {
+            properties = new Properties();
+            if (CONFIG_FILE.exists()) {
+                try (Reader reader = Files.newBufferedReader(CONFIG_FILE.toPath(), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return properties;
+    }
+
+    /** Drops the loaded settings, so the config file is read again when next used */
+    static synchronized void forget() {
+        properties = null;
+    }
+
+    /** Returns the value of the setting, or null if it is not set */
+    public static String get(String key) {
+        return getProperties().getProperty(key);
+    }
+
+    /** Returns the value of an integer setting, or the default value if it is not set */
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            throw error("Invalid value for %s: %s", key, value);
+        }
+    }
+
+    /** Returns the value of a boolean setting, or the default value if it is not set */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw error("Invalid value for %s: %s", key, value);
+        }
+    }
+
+    /** Sets the setting to the given value, and persists the config file */
+    public static void set(String key, String value) {
+        getProperties().setProperty(key, value);
+        persist();
+    }
+
+    /** Removes the setting, so it takes its default value, and persists the config file */
+    public static void unset(String key) {
+        getProperties().remove(key);
+        persist();
+    }
+
+    private static void persist() {
+        StringWriter writer = new StringWriter();
+        try {
+            properties.store(writer, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        writeContentsAtomically(CONFIG_FILE, writer.toString());
+    }
+}
@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Main.*;
+import static gitlet.Utils.*;
+
+/**
+ * A long-running server that runs gitlet commands for the repository in its working directory,
+ * so that commands skip JVM startup and reuse the objects already read by earlier commands.
+ *
+ * The daemon listens on a loopback port, which it writes to `.gitlet/daemon` along with a random
+ * token that only the repository's owner can read; a request is ignored unless it starts with
+ * that token, as is a client that stops sending before its request is complete. A request is a list of fields, each terminated by a NUL byte: the token, the
+ * client's working directory, the number of arguments, then each argument. The daemon runs the
+ * command exactly as `java gitlet.Main` would, holding the repository lock, writes everything
+ * the command prints back to the client, and closes the connection.
+ *
+ * Commands run one at a time. Before each command, every piece of repository state that another
+ * process could have changed is dropped, while objects stored under their digest stay cached.
+ * `gc --background` collects garbage on a thread of its own, marking while commands run and
+ * sweeping between them.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Daemon {
+
+    /** File holding the port and token of the running daemon */
+    public static final File DAEMON_FILE = join(GITLET_DIR, "daemon");
+
+    /** Terminates every field of a request */
+    static final int FIELD_END = 0;
+    /** Requests with more fields than this are rejected */
+    static final int MAX_FIELDS = 4096;
+    /** A client that sends nothing for this long is dropped, as if its token were wrong */
+    static final int REQUEST_TIMEOUT_MILLIS = 5000;
+
+    /** Held while a command runs, so background work can wait until none is running */
+    static final Object COMMANDS = new Object();
+
+    /** Whether this process is serving commands */
+    private static volatile boolean serving;
+    /** Where the daemon prints messages of its own, while commands print to their clients */
+    private static volatile PrintStream console = System.out;
+
+    /** Starts a daemon for the repository in the CWD, and serves requests until stopped */
+    public static void serve() {
+        if (isRunning()) {
+            throw new GitletException("A gitlet daemon is already running for this repository.");
+        }
+        String token = newToken();
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            writeDaemonFile(server.getLocalPort(), token);
+            Runtime.getRuntime().addShutdownHook(new Thread(DAEMON_FILE::delete));
+            System.out.println("Serving gitlet commands on port " + server.getLocalPort() + ".");
+            console = System.out;
+            serving = true;
+            boolean running = true;
+            while (running) {
+                try (Socket client = server.accept()) {
+                    // Otherwise a client that never finishes its request would hold up every other
+                    client.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                    running = handle(client, token);
+                } catch (SocketTimeoutException excp) {
+                    // Ignored like a request without the token
+                } catch (IOException excp) {
+                    // The client went away; keep serving the others
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            serving = false;
+            DAEMON_FILE.delete();
+        }
+    }
+
+    /** Returns true if this process is a daemon serving commands */
+    static boolean isServing() {
+        return serving;
+    }
+
+    /** Prints a message of the daemon's own, such as the report of a background collection */
+    static void log(String message) {
+        console.println(message);
+    }
+
+    /** Asks the running daemon to stop */
+    public static void stop() {
+        if (!isRunning()) {
+            throw new GitletException("No gitlet daemon is running for this repository.");
+        }
+        send(List.of("daemon", "stop"), System.out);
+    }
+
+    /** Returns true if a daemon is running for the repository in the CWD */
+    public static boolean isRunning() {
+        String[] daemon = readDaemonFile();
+        if (daemon == null) {
+            return false;
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon[0]))) {
+            return socket.isConnected();
+        } catch (IOException | NumberFormatException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends a command to the running daemon, copying what it prints to the given stream.
+     * This is what the thin client does; it is used here to stop the daemon.
+     */
+    static void send(List<String> args, PrintStream out) {
+        String[] daemon = readDaemonFile();
+        if (daemon == null) {
+            throw new GitletException("No gitlet daemon is running for this repository.");
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon[0]))) {
+            OutputStream request = socket.getOutputStream();
+            List<String> fields = new ArrayList<>(List.of(daemon[1], CWD.getPath(), Integer.toString(args.size())));
+            fields.addAll(args);
+            for (String field : fields) {
+                request.write(field.getBytes(StandardCharsets.UTF_8));
+                request.write(FIELD_END);
+            }
+            request.flush();
+            socket.getInputStream().transferTo(out);
+            out.flush();
+        } catch (IOException | NumberFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Runs the client's command, returning false if the daemon should stop */
+    private static boolean handle(Socket client, String token) throws IOException {
+        InputStream in = new BufferedInputStream(client.getInputStream());
+        String clientToken = readField(in);
+        if (!token.equals(clientToken)) {
+            return true; // not from the repository's owner
+        }
+        String clientDir = readField(in);
+        String count = readField(in);
+        PrintStream out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8);
+        if (clientDir == null || count == null || !new File(clientDir).getCanonicalFile().equals(CWD.getCanonicalFile())) {
+            out.println("This daemon serves " + CWD.getPath() + ".");
+            return true;
+        }
+        List<String> args = new ArrayList<>();
+        try {
+            int numArgs = Integer.parseInt(count);
+            if (numArgs < 0 || numArgs > MAX_FIELDS) {
+                throw new NumberFormatException(count);
+            }
+            for (int i = 0; i < numArgs; i++) {
+                String arg = readField(in);
+                if (arg == null) {
+                    return true;
+                }
+                args.add(arg);
+            }
+        } catch (NumberFormatException excp) {
+            out.println("Malformed request.");
+            return true;
+        }
+        if (args.equals(List.of("daemon", "stop"))) {
+            out.println("Stopped the gitlet daemon.");
+            return false;
+        }
+        run(args.toArray(new String[0]), out);
+        return true;
+    }
+
+    /** Runs a command as Main would, printing its output to the given stream */
+    private static void run(String[] args, PrintStream out) {
+        PrintStream stdout = System.out;
+        System.setOut(out);
+        try {
+            synchronized (COMMANDS) {
+                forgetMutableState();
+                Main.execute(args);
+            }
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+        } catch (RuntimeException | AssertionError excp) {
+            // A failed command must not take the daemon down with it
+            out.println("Error: " + excp);
+        } finally {
+            System.out.flush();
+            System.setOut(stdout);
+        }
+    }
+
+    /** Reads a field terminated by FIELD_END, or returns null if the stream ends first */
+    private static String readField(InputStream in) throws IOException {
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+        for (int b = in.read(); b != FIELD_END; b = in.read()) {
+            if (b < 0) {
+                return null;
+            }
+            field.write(b);
+        }
+        return field.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Writes the daemon file, readable only by its owner where the file system allows it */
+    private static void writeDaemonFile(int port, String token) throws IOException {
+        File temp = join(GITLET_DIR, "daemon" + TEMP_SUFFIX);
+        temp.delete();
+        Files.createFile(temp.toPath());
+        try {
+            Files.setPosixFilePermissions(temp.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException excp) {
+            // Not a POSIX file system; the token is as private as the repository itself
+        }
+        writeContents(temp, port + "\n" + token + "\n");
+        Files.move(temp.toPath(), DAEMON_FILE.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Returns the port and token of the running daemon, or null if there is none */
+    private static String[] readDaemonFile() {
+        if (!DAEMON_FILE.isFile()) {
+            return null;
+        }
+        String[] lines = readContentsAsString(DAEMON_FILE).split("\n");
+        return lines.length < 2 ? null : lines;
+    }
+
+    private static String newToken() {
+        byte[] token = new byte[16];
+        new SecureRandom().nextBytes(token);
+        return bytesToHex(token);
+    }
+}
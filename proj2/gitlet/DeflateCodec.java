@@ -0,0 +1,72 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A Codec compressing data with a Deflater at a given level.
+ * The encoded form is the length of the data as an int, followed by the deflated data.
+ * All levels share the same tag, since they are all read back the same way.
+ *
+ * @author Jordan Kilfoy
+ */
+public class DeflateCodec implements Codec {
+
+    static final byte TAG = 1;
+
+    /** The compression level, from 1 (fastest) to 9 (smallest) */
+    private final int level;
+
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        Deflater deflater = new Deflater(level);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] encoded, int offset, int length) {
+        byte[] data = new byte[ByteBuffer.wrap(encoded, offset, 4).getInt()];
+        Inflater inflater = new Inflater();
+        inflater.setInput(encoded, offset + 4, length - 4);
+        try {
+            int inflated = 0;
+            while (inflated < data.length && !inflater.finished()) {
+                inflated += inflater.inflate(data, inflated, data.length - inflated);
+            }
+            if (inflated != data.length) {
+                throw new IllegalArgumentException("truncated deflate data");
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Creates and applies binary deltas, which describe how to rebuild a target byte[] from a base.
+ *
+ * A delta starts with the varint lengths of the base and target, followed by a list of
+ * instructions. An instruction byte between 1 and 127 inserts that many of the bytes that follow
+ * it; an instruction byte of 0x80 is followed by a varint offset and length, and copies that range
+ * of the base. Deltas are created by indexing every {@link #BLOCK}-byte block of the base, then
+ * scanning the target for matching blocks and extending each match as far as it goes.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Delta {
+
+    /** The size of the blocks of the base that are indexed */
+    static final int BLOCK = 16;
+    /** The longest insert a single instruction can hold */
+    static final int MAX_INSERT = 0x7f;
+    /** Instruction copying a range of the base */
+    static final int COPY = 0x80;
+
+    /** Returns a delta that rebuilds the target from the base */
+    public static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        // Index the offset of every block of the base by its hash
+        int tableSize = Integer.highestOneBit(Math.max(1, base.length / BLOCK)) * 2;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            table[hash(base, i) & (tableSize - 1)] = i;
+        }
+
+        int insertStart = 0;
+        int pos = 0;
+        while (pos + BLOCK <= target.length) {
+            int candidate = table[hash(target, pos) & (tableSize - 1)];
+            if (candidate < 0 || !Arrays.equals(base, candidate, candidate + BLOCK, target, pos, pos + BLOCK)) {
+                pos++;
+                continue;
+            }
+            // Extend the match backwards into the pending insert, then forwards
+            int baseStart = candidate;
+            int targetStart = pos;
+            while (targetStart > insertStart && baseStart > 0 && base[baseStart - 1] == target[targetStart - 1]) {
+                baseStart--;
+                targetStart--;
+            }
+            int length = pos - targetStart + BLOCK;
+            while (baseStart + length < base.length && targetStart + length < target.length
+                    && base[baseStart + length] == target[targetStart + length]) {
+                length++;
+            }
+            writeInsert(out, target, insertStart, targetStart);
+            out.write(COPY);
+            writeVarint(out, baseStart);
+            writeVarint(out, length);
+            pos = targetStart + length;
+            insertStart = pos;
+        }
+        writeInsert(out, target, insertStart, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the target rebuilt by applying the delta to the base */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = new int[1];
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta does not apply to this base");
+        }
+        byte[] target = new byte[readVarint(delta, pos)];
+        int written = 0;
+        while (pos[0] < delta.length) {
+            int instruction = delta[pos[0]++] & 0xff;
+            if (instruction == COPY) {
+                int offset = readVarint(delta, pos);
+                int length = readVarint(delta, pos);
+                System.arraycopy(base, offset, target, written, length);
+                written += length;
+            } else {
+                System.arraycopy(delta, pos[0], target, written, instruction);
+                pos[0] += instruction;
+                written += instruction;
+            }
+        }
+        if (written != target.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return target;
+    }
+
+    /** Writes the bytes of the target in [start, end) as insert instructions */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target, int start, int end) {
+        while (start < end) {
+            int length = Math.min(MAX_INSERT, end - start);
+            out.write(length);
+            out.write(target, start, length);
+            start += length;
+        }
+    }
+
+    private static int hash(byte[] bytes, int start) {
+        int hash = 0;
+        for (int i = start; i < start + BLOCK; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Writes a non-negative int as a little-endian base-128 varint */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Reads a varint starting at pos[0], advancing pos[0] past it */
+    private static int readVarint(byte[] bytes, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            int b = bytes[pos[0]++] & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
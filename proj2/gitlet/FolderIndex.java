@@ -0,0 +1,166 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import static gitlet.Utils.*;
+
+/**
+ * A persistent, memory-mapped index of the SHA-1 ids of the loose objects in a folder,
+ * so that checking whether an object exists never touches the folder itself.
+ *
+ * The index file starts with a magic number and the number of sorted entries, followed by
+ * that many raw 20-byte ids in sorted order, which are binary searched in place through a
+ * read-only mapping of the file. Newly added ids are appended unsorted to the end of the file
+ * and kept in memory; once this tail grows large relative to the sorted part, the whole index
+ * is rewritten sorted. If the index file is missing, it is rebuilt once from a directory scan.
+ *
+ * @author Jordan Kilfoy
+ */
+public class FolderIndex {
+
+    /** Magic number at the start of every folder index */
+    static final int MAGIC = 0x46494458; // "FIDX"
+    /** Length of the header: magic and sorted entry count */
+    static final int HEADER = 8;
+    /** Tails shorter than this are never compacted */
+    static final int MIN_TAIL = 1024;
+
+    /** The index file */
+    private final File file;
+    /** Lists the ids in the folder, used to rebuild a missing index */
+    private final Supplier<List<String>> scan;
+
+    /** Read-only mapping of the index file; lazily loaded */
+    private ByteBuffer mapped;
+    /** The number of sorted entries in the mapping */
+    private int sorted;
+    /** The unsorted ids appended after the sorted entries */
+    private TreeSet<String> tail;
+
+    public FolderIndex(File file, Supplier<List<String>> scan) {
+        this.file = file;
+        this.scan = scan;
+    }
+
+    /** Returns true if the index contains the given id */
+    public synchronized boolean contains(String id) {
+        if (!isUid(id)) return false;
+        load();
+        return tail.contains(id) || PackFile.search(mapped, HEADER, sorted, hexToBytes(id)) >= 0;
+    }
+
+    /** Adds the given id to the index */
+    public synchronized void add(String id) {
+        if (contains(id)) return;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.APPEND)) {
+            ByteBuffer entry = ByteBuffer.wrap(hexToBytes(id));
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        tail.add(id);
+        if (tail.size() > Math.max(MIN_TAIL, sorted / 16)) {
+            rewrite(ids());
+        }
+    }
+
+    /** Removes the given id from the index */
+    public synchronized void remove(String id) {
+        if (!contains(id)) return;
+        List<String> ids = ids();
+        ids.remove(id);
+        rewrite(ids);
+    }
+
+    /** Removes the given ids from the index, rewriting it once */
+    public synchronized void removeAll(Collection<String> removed) {
+        List<String> ids = ids();
+        if (ids.removeAll(new HashSet<>(removed))) {
+            rewrite(ids);
+        }
+    }
+
+    /** Removes every id from the index */
+    public synchronized void clear() {
+        rewrite(new ArrayList<>());
+    }
+
+    /** Returns up to limit ids in the index starting with the given hex prefix, in sorted order */
+    public synchronized List<String> withPrefix(String prefix, int limit) {
+        load();
+        TreeSet<String> ids = new TreeSet<>(PackFile.withPrefix(mapped, HEADER, sorted, PackFile.ID_BYTES, prefix, limit));
+        for (String id : tail.tailSet(prefix)) {
+            if (!id.startsWith(prefix)) break;
+            ids.add(id);
+        }
+        List<String> matches = new ArrayList<>(ids);
+        return matches.subList(0, Math.min(limit, matches.size()));
+    }
+
+    /** Returns every id in the index, in sorted order */
+    public synchronized List<String> ids() {
+        load();
+        TreeSet<String> ids = new TreeSet<>(tail);
+        for (int i = 0; i < sorted; i++) {
+            ids.add(bytesToHex(PackFile.idAt(mapped, HEADER, i)));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Drops the mapping of the index file, so it is mapped again when next used */
+    public synchronized void refresh() {
+        mapped = null;
+        tail = null;
+    }
+
+    /** Maps the index file, rebuilding it first if it does not exist */
+    private void load() {
+        if (mapped != null) return;
+        if (!file.exists()) {
+            List<String> ids = scan.get();
+            rewrite(ids == null ? new ArrayList<>() : ids);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a folder index: " + file);
+        }
+        sorted = mapped.getInt(4);
+        tail = new TreeSet<>();
+        int entries = (mapped.limit() - HEADER) / PackFile.ID_BYTES;
+        for (int i = sorted; i < entries; i++) {
+            tail.add(bytesToHex(PackFile.idAt(mapped, HEADER, i)));
+        }
+    }
+
+    /** Atomically replaces the index file with a sorted index of the given ids, then maps it */
+    private void rewrite(Collection<String> ids) {
+        TreeSet<String> sortedIds = new TreeSet<>(ids);
+        ByteBuffer contents = ByteBuffer.allocate(HEADER + sortedIds.size() * PackFile.ID_BYTES);
+        contents.putInt(MAGIC);
+        contents.putInt(sortedIds.size());
+        for (String id : sortedIds) {
+            contents.put(hexToBytes(id));
+        }
+        WriteBatch.writeNow(file, contents.array());
+        mapped = null;
+        load();
+    }
+}
@@ -2,8 +2,9 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
 import static gitlet.Utils.*;
 
@@ -17,42 +18,126 @@ public class FolderManager<T extends Serializable> implements Iterable<T> {
     final File folder;
     final Class<T> type;
     final Function<T, String> getFileName;
-    final HashMap<String, T> cache;
+    /** The most objects kept in the cache, unless the cache is replaced */
+    public static final int DEFAULT_CACHE_OBJECTS = 10000;
+
+    /** Objects already read or persisted; safe to use from several threads */
+    ObjectCache<T> cache;
+    /** Whether objects read or persisted are kept in the cache */
+    final boolean cached;
+    /** The binary format objects are written in; Java serialization if null */
+    BinaryFormat<T> format;
 
     public FolderManager(File folder, Class<T> type) {
         this(folder, type, Object::toString);
     }
 
     public FolderManager(File folder, Class<T> type, Function<T, String> getFileName) {
+        this(folder, type, getFileName, true);
+    }
+
+    public FolderManager(File folder, Class<T> type, Function<T, String> getFileName, boolean cached) {
         this.folder = folder;
         this.type = type;
         this.getFileName = getFileName;
-        this.cache = new HashMap<>();
+        this.cache = WeightedCache.ofCount(DEFAULT_CACHE_OBJECTS);
+        this.cached = cached;
     }
 
     public File getFolder() {
         return folder;
     }
 
+    /** Sets the binary format objects are written in. Objects written with
+     * Java serialization before a format was set can still be read */
+    public void setFormat(BinaryFormat<T> format) {
+        this.format = format;
+    }
+
+    /** Replaces the cache of objects read or persisted, dropping every object cached so far */
+    public void setCache(ObjectCache<T> cache) {
+        this.cache = cache;
+    }
+
+    /** Returns the counters of the cache of objects read or persisted */
+    public ObjectCache.Stats getCacheStats() {
+        return cache.stats();
+    }
+
+    /** Returns the bytes the object is written as */
+    byte[] encode(T obj) {
+        return BinaryFormat.encode(format, obj);
+    }
+
+    /** Returns the object read back from the bytes it was written as */
+    T decode(byte[] bytes) {
+        return BinaryFormat.decode(format, bytes, type);
+    }
+
     public void persist(T obj) {
         persist(obj, getFileName.apply(obj));
     }
 
+    /** Writes the object under the given name, replacing the file atomically so that
+     * other processes never read a partly written object */
     public void persist(T obj, String fileName) {
         if (obj == null) return; // do not write null values
-        writeObject(join(folder, fileName), obj);
+        File file = join(folder, fileName);
+        if (fileName.indexOf('/') >= 0) {
+            file.getParentFile().mkdirs();
+        }
+        writeContentsAtomically(file, encode(obj));
+        remember(fileName, obj);
+    }
+
+    /**
+     * Persists the object under the given name only if the object currently stored under
+     * that name equals the expected one, as read from disk rather than from the cache.
+     * Callers must hold the repository's exclusive lock, so nothing changes in between.
+     * @param expected The object expected to be stored, or null if none should be
+     * @return True if the object was persisted
+     */
+    public boolean compareAndPersist(T expected, T obj, String fileName) {
+        cache.remove(fileName);
+        T current = read(fileName);
+        if (expected == null ? current != null : !expected.equals(current)) {
+            return false;
+        }
+        persist(obj, fileName);
+        return true;
     }
 
     public T read(String fileName) {
-        if (cache.containsKey(fileName)) return cache.get(fileName);
+        T cachedObj = cache.get(fileName);
+        if (cachedObj != null) return cachedObj;
         if ("".equals(fileName) || !contains(fileName)) return null;
-        T obj = readObject(join(folder, fileName), type);
-        cache.put(fileName, obj);
+        T obj = decode(readFile(fileName));
+        remember(fileName, obj);
         return obj;
     }
 
+    /** Drops every cached object, so objects are read from disk again when next used */
+    public void forget() {
+        cache.clear();
+    }
+
+    /** Caches the object read or persisted under the given name, unless caching is disabled */
+    void remember(String fileName, T obj) {
+        if (cached) {
+            cache.put(fileName, obj);
+        }
+    }
+
     public boolean contains(String fileName) {
-        return join(folder, fileName).exists();
+        File file = join(folder, fileName);
+        return file.exists() || WriteBatch.isPending(file);
+    }
+
+    /** Returns the bytes of the file, including one written in the open batch but not yet in place */
+    byte[] readFile(String fileName) {
+        File file = join(folder, fileName);
+        byte[] pending = WriteBatch.pending(file);
+        return pending != null ? pending : readContents(file);
     }
 
     /** Deletes the file from the folder */
@@ -64,8 +149,33 @@ public class FolderManager<T extends Serializable> implements Iterable<T> {
         }
     }
 
+    /** Returns the names of all objects in the folder, in lexicographic order, skipping
+     * temporary files left by interrupted writes. Objects in subfolders, such as the branches
+     * fetched from a remote, are named by their path, as in {@code origin/master} */
+    public List<String> names() {
+        if (!folder.isDirectory()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        addNames(folder, "", names);
+        names.sort(null);
+        return names;
+    }
+
+    private static void addNames(File subfolder, String prefix, List<String> names) {
+        File[] files = subfolder.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addNames(file, prefix + file.getName() + "/", names);
+            } else if (!file.getName().endsWith(TEMP_SUFFIX)) {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
+
     public void clearAll() {
-        for (String filename : plainFilenamesIn(folder)) {
+        for (String filename : names()) {
             clear(filename);
         }
     }
@@ -12,7 +12,7 @@ public class FolderManagerIterator<T extends Serializable> implements Iterator<T
 
     public FolderManagerIterator(FolderManager<T> folderManager) {
         this.folderManager = folderManager;
-        files = Utils.plainFilenamesIn(folderManager.getFolder());
+        files = folderManager.names();
         index = 0;
     }
 
@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static gitlet.Main.*;
+import static gitlet.Utils.*;
+
+/**
+ * Checks that a repository is intact: that every stored commit, tree, blob, chunk and staged
+ * blob still hashes to the digest it is stored under, and that every id named by a commit,
+ * tree, blob, branch or the staging area is stored.
+ *
+ * Objects are read and hashed on `fsck.workers` threads, each taking the next object from a
+ * shared counter, so reading some objects overlaps with hashing others and a large repository
+ * is checked as fast as it can be read rather than as fast as one thread can hash. Digests are
+ * computed from what is stored, bypassing the cache: a blob's contents are rebuilt from its
+ * delta or read from its chunks, and hashed with its name. Each problem is printed as soon as
+ * it is found, so problems from different threads may come in any order.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Fsck {
+
+    /** Setting for the number of objects checked at once */
+    public static final String WORKERS = "fsck.workers";
+    public static final int DEFAULT_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** Checks what one kind of object refers to, reporting each id that is not stored */
+    public interface References<T> {
+        /** Returns true if everything the object with the given id refers to is stored */
+        boolean check(String id, T obj, Consumer<String> report);
+    }
+
+    /** Checks the repository with the configured number of workers, printing each problem as
+     * it is found and then how many objects were checked */
+    public static void check() {
+        int workers = Config.getInt(WORKERS, DEFAULT_WORKERS);
+        AtomicLong problems = new AtomicLong();
+        Consumer<String> report = problem -> {
+            problems.incrementAndGet();
+            System.out.println(problem);
+        };
+        // Chunks and delta bases first, since blobs are hashed by reading them
+        long objects = verify(CHUNKS, "chunk", Chunk::digest, (id, chunk, r) -> true, workers, report);
+        objects += verify(TRACKED_BLOBS, "blob", Blob::computeDigest,
+                (id, blob, r) -> checkBlob("blob", id, blob, r), workers, report);
+        objects += verify(STAGED_BLOBS, "staged blob", Blob::computeDigest,
+                (id, blob, r) -> checkBlob("staged blob", id, blob, r), workers, report);
+        objects += verify(TREES, "tree", Tree::digest, Fsck::checkTree, workers, report);
+        objects += verify(COMMITS, "commit", Commit::digest, Fsck::checkCommit, workers, report);
+        checkRefs(report);
+        System.out.printf("Checked %d objects and found %d problems.%n", objects, problems.get());
+    }
+
+    /**
+     * Checks every object in a store: that it can be read, that what it refers to is stored,
+     * and that it hashes to the id it is stored under.
+     * @param store The store to check
+     * @param kind The name of its objects, as reported
+     * @param digest Computes the digest of an object from its stored contents
+     * @param references Checks what an object refers to; its digest is only computed if that
+     *                   is all stored, since a blob's contents are read from its base and chunks
+     * @param workers The number of objects checked at once
+     * @param report Receives each problem found, possibly from several threads at once
+     * @return The number of objects checked
+     */
+    public static <T extends Serializable & Digestable> long verify(ObjectStore<T> store, String kind,
+            Function<T, String> digest, References<T> references, int workers, Consumer<String> report) {
+        List<String> ids = store.names();
+        WorkerThreads.forEach(ids, workers, "fsck", id -> {
+            try {
+                T obj = isStored(store, id) ? store.readStored(id) : null;
+                if (obj == null) {
+                    report.accept("missing " + kind + " " + id);
+                } else if (references.check(id, obj, report)) {
+                    String actual = digest.apply(obj);
+                    if (!actual.equals(id)) {
+                        report.accept("corrupt " + kind + " " + id + ": contents hash to " + actual);
+                    }
+                }
+            } catch (RuntimeException excp) {
+                report.accept("unreadable " + kind + " " + id + ": " + excp.getMessage());
+            }
+        });
+        return ids.size();
+    }
+
+    /** Returns true if the object is stored, looking for the file of a loose object, which
+     * reading it does not do */
+    private static boolean isStored(ObjectStore<?> store, String id) {
+        return store.contains(id) && !store.isLooseFileMissing(id);
+    }
+
+    /** Checks the delta base and chunks of a blob, naming it as the given kind */
+    private static boolean checkBlob(String kind, String id, Blob blob, Consumer<String> report) {
+        boolean complete = true;
+        if (blob.isDelta() && !isStored(TRACKED_BLOBS, blob.getDeltaBaseId())) {
+            report.accept("missing delta base " + blob.getDeltaBaseId() + " of " + kind + " " + id);
+            complete = false;
+        }
+        for (String chunkId : blob.getChunkIds()) {
+            if (!isStored(CHUNKS, chunkId)) {
+                report.accept("missing chunk " + chunkId + " of " + kind + " " + id);
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    private static boolean checkTree(String id, Tree tree, Consumer<String> report) {
+        boolean complete = true;
+        for (String subtreeId : tree.getTrees().values()) {
+            if (!isStored(TREES, subtreeId)) {
+                report.accept("missing subtree " + subtreeId + " of tree " + id);
+                complete = false;
+            }
+        }
+        for (String blobId : tree.getBlobs().values()) {
+            if (!isStored(TRACKED_BLOBS, blobId)) {
+                report.accept("missing blob " + blobId + " of tree " + id);
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    private static boolean checkCommit(String id, Commit commit, Consumer<String> report) {
+        boolean complete = true;
+        for (String parentId : new String[] {commit.getParentId(), commit.getSecondParentId()}) {
+            if (!parentId.isEmpty() && !isStored(COMMITS, parentId)) {
+                report.accept("missing parent " + parentId + " of commit " + id);
+                complete = false;
+            }
+        }
+        if (commit.hasTree()) {
+            if (!isStored(TREES, commit.getTreeId())) {
+                report.accept("missing tree " + commit.getTreeId() + " of commit " + id);
+                complete = false;
+            }
+        } else {
+            for (String blobId : commit.getBlobs().values()) {
+                if (!isStored(TRACKED_BLOBS, blobId)) {
+                    report.accept("missing blob " + blobId + " of commit " + id);
+                    complete = false;
+                }
+            }
+        }
+        return complete;
+    }
+
+    /** Checks that HEAD names a branch, that every branch's commit is stored, and that every
+     * staged file's blob is stored */
+    private static void checkRefs(Consumer<String> report) {
+        String headName = readContentsAsString(Repository.HEAD_FILE);
+        if (BRANCHES.read(headName) == null) {
+            report.accept("missing branch " + headName + " of HEAD");
+        }
+        for (String name : BRANCHES.names()) {
+            Branch branch = BRANCHES.read(name);
+            if (!isStored(COMMITS, branch.getCommitId())) {
+                report.accept("missing commit " + branch.getCommitId() + " of branch " + name);
+            }
+        }
+        for (Map.Entry<String, String> staged : StagingArea.getAdded().entrySet()) {
+            if (!isStored(STAGED_BLOBS, staged.getValue())) {
+                report.accept("missing staged blob " + staged.getValue() + " of file " + staged.getKey());
+            }
+        }
+    }
+}
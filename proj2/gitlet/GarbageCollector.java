@@ -0,0 +1,308 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static gitlet.Main.*;
+import static gitlet.Utils.*;
+
+/**
+ * Deletes the objects no branch can reach: commits left behind by `reset` or `rm-branch`,
+ * with the trees, blobs and chunks only they use, and staged blobs the staging area no longer
+ * names.
+ *
+ * A collection marks, then sweeps. Marking walks from the commit of every branch through the
+ * parents and tree of each commit it reaches, marking every tree, blob, delta base and chunk
+ * on the way; commits and trees already marked are not visited again, so shared history is
+ * walked once. Every few seconds, marking saves the objects marked so far and those reached
+ * but not yet visited to `.gitlet/gc-state`, so a collection that is stopped, or given a time
+ * limit, carries on from there the next time it runs.
+ *
+ * Sweeping holds the repository lock exclusively. It first marks from the branches again,
+ * which only visits what was committed or moved since marking began, and marks the chunks of
+ * every staged blob, then has each store delete the objects not marked and pack the rest. Since whatever a command reaches is
+ * marked by then, marking can run on a background thread of the daemon while other commands
+ * run; only sweeping waits for them.
+ *
+ * @author Jordan Kilfoy
+ */
+public class GarbageCollector {
+
+    /** File holding the progress of an unfinished collection */
+    public static final File STATE_FILE = join(GITLET_DIR, "gc-state");
+
+    /** How often marking saves its progress */
+    static final long CHECKPOINT_MILLIS = 5000;
+
+    /** The progress of a collection */
+    private static class State implements Serializable {
+        /** Pinned, so a collection's saved progress stays readable after recompiling */
+        private static final long serialVersionUID = -432796241486181367L;
+
+        final HashSet<String> commits = new HashSet<>();
+        final HashSet<String> trees = new HashSet<>();
+        final HashSet<String> blobs = new HashSet<>();
+        final HashSet<String> chunks = new HashSet<>();
+        /** Commits and trees reached but not yet visited, each prefixed by its kind */
+        final ArrayDeque<String> pending = new ArrayDeque<>();
+        /** Whether sweeping began, after which the commit graph and message index are
+         * rebuilt even if this run deletes no commits */
+        boolean sweeping;
+    }
+
+    private static final char COMMIT = 'c';
+    private static final char TREE = 't';
+
+    /** What a collection deleted */
+    public static class Result {
+        long commits;
+        long trees;
+        long blobs;
+        long chunks;
+        long stagedBlobs;
+        long bytesReclaimed;
+
+        /** Returns the total number of objects deleted */
+        public long getDeleted() {
+            return commits + trees + blobs + chunks + stagedBlobs;
+        }
+
+        public long getBytesReclaimed() {
+            return bytesReclaimed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Removed %d commits, %d trees, %d blobs, %d chunks and %d staged blobs, "
+                    + "reclaiming %d bytes.", commits, trees, blobs, chunks, stagedBlobs, bytesReclaimed);
+        }
+    }
+
+    /** The collection running on a background thread of the daemon, or null */
+    private static Thread background;
+    /** What the last background collection printed, or null if none has finished */
+    private static volatile String lastReport;
+
+    /**
+     * Runs a collection, carrying on from an unfinished one. The caller holds the repository
+     * lock exclusively.
+     * @param maxMillis How long marking may run before saving its progress and stopping
+     * @return What was deleted, or null if marking stopped before it finished
+     */
+    public static Result collect(long maxMillis) {
+        synchronized (GarbageCollector.class) {
+            if (background != null && background.isAlive()) {
+                throw new GitletException("Garbage collection is already running.");
+            }
+        }
+        State state = loadState();
+        reachBranches(state);
+        long now = System.currentTimeMillis();
+        long deadline = maxMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxMillis;
+        if (!mark(state, deadline)) {
+            return null;
+        }
+        return sweep(state);
+    }
+
+    /**
+     * Starts a collection on a background thread of the daemon. Marking runs alongside the
+     * commands the daemon serves; sweeping waits until no command is running, then holds the
+     * repository lock exclusively.
+     */
+    public static synchronized void startInBackground() {
+        if (!Daemon.isServing()) {
+            throw new GitletException("Background garbage collection needs a running daemon.");
+        }
+        if (background != null && background.isAlive()) {
+            throw new GitletException("Garbage collection is already running.");
+        }
+        background = new Thread(GarbageCollector::collectInBackground, "gc");
+        background.setDaemon(true);
+        background.start();
+    }
+
+    /** Returns the state of background collection, as printed by `gc --status` */
+    public static synchronized String status() {
+        if (background != null && background.isAlive()) {
+            return "Garbage collection is running.";
+        }
+        return lastReport != null ? lastReport : "No garbage collection has run in the background.";
+    }
+
+    @SuppressWarnings("try")
+    private static void collectInBackground() {
+        String report;
+        try {
+            State state;
+            synchronized (Daemon.COMMANDS) {
+                // Branches are read between commands, which may be moving them
+                state = loadState();
+                reachBranches(state);
+            }
+            mark(state, Long.MAX_VALUE);
+            Result result;
+            synchronized (Daemon.COMMANDS) {
+                // The lock is only held while sweeping, so is never referenced
+                try (RepositoryLock lock = RepositoryLock.acquire(GITLET_DIR, true)) {
+                    // Other processes may have committed or moved branches while marking
+                    Main.forgetMutableState();
+                    result = sweep(state);
+                }
+            }
+            report = result.toString();
+        } catch (RuntimeException excp) {
+            report = "Garbage collection failed: " + excp.getMessage();
+        }
+        lastReport = report;
+        Daemon.log(report);
+    }
+
+    /** Reads the progress of an unfinished collection, or starts a new one */
+    private static State loadState() {
+        if (STATE_FILE.exists()) {
+            try {
+                return readObject(STATE_FILE, State.class);
+            } catch (IllegalArgumentException excp) {
+                // Unreadable progress is dropped, and the collection starts over
+            }
+        }
+        return new State();
+    }
+
+    /** Saves the progress of the collection at once, rather than in the batch of a command
+     * that may be running alongside background marking */
+    private static void saveState(State state) {
+        WriteBatch.writeNow(STATE_FILE, serialize(state));
+    }
+
+    /** Adds the commit of every branch not yet marked to the commits to visit */
+    private static void reachBranches(State state) {
+        for (String name : BRANCHES.names()) {
+            Branch branch = BRANCHES.read(name);
+            if (branch != null && !state.commits.contains(branch.getCommitId())) {
+                state.pending.push(COMMIT + branch.getCommitId());
+            }
+        }
+    }
+
+    /**
+     * Marks every object reachable from the commits and trees to visit, saving progress every
+     * few seconds.
+     * @param deadline When to save progress and stop, in milliseconds
+     * @return True if marking finished, false if it stopped at the deadline
+     */
+    private static boolean mark(State state, long deadline) {
+        long checkpoint = System.currentTimeMillis() + CHECKPOINT_MILLIS;
+        while (!state.pending.isEmpty()) {
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                saveState(state);
+                return false;
+            }
+            if (now >= checkpoint) {
+                saveState(state);
+                checkpoint = now + CHECKPOINT_MILLIS;
+            }
+            String next = state.pending.pop();
+            String id = next.substring(1);
+            if (next.charAt(0) == COMMIT) {
+                visitCommit(state, id);
+            } else {
+                visitTree(state, id);
+            }
+        }
+        return true;
+    }
+
+    private static void visitCommit(State state, String id) {
+        if (id.isEmpty() || !state.commits.add(id)) return;
+        Commit commit = COMMITS.read(id);
+        if (commit == null) {
+            throw new IllegalArgumentException("missing commit " + id);
+        }
+        state.pending.push(COMMIT + commit.getParentId());
+        state.pending.push(COMMIT + commit.getSecondParentId());
+        if (commit.hasTree()) {
+            state.pending.push(TREE + commit.getTreeId());
+        } else {
+            for (String blobId : commit.getBlobs().values()) {
+                markBlob(state, blobId); // commits made before trees
+            }
+        }
+    }
+
+    private static void visitTree(State state, String id) {
+        if (!state.trees.add(id)) return;
+        Tree tree = TREES.read(id);
+        if (tree == null) {
+            throw new IllegalArgumentException("missing tree " + id);
+        }
+        for (String subtreeId : tree.getTrees().values()) {
+            if (!state.trees.contains(subtreeId)) {
+                state.pending.push(TREE + subtreeId);
+            }
+        }
+        for (String blobId : tree.getBlobs().values()) {
+            markBlob(state, blobId);
+        }
+    }
+
+    /** Marks the blob, the delta bases it is rebuilt from, and its chunks */
+    private static void markBlob(State state, String blobId) {
+        while (blobId != null && state.blobs.add(blobId)) {
+            Blob blob = TRACKED_BLOBS.read(blobId);
+            if (blob == null) {
+                throw new IllegalArgumentException("missing blob " + blobId);
+            }
+            if (blob.isChunked()) {
+                state.chunks.addAll(blob.getChunkIds());
+            }
+            blobId = blob.isDelta() ? blob.getDeltaBaseId() : null;
+        }
+    }
+
+    /** Marks from the branches again, then deletes every object not marked from each store */
+    private static Result sweep(State state) {
+        reachBranches(state);
+        mark(state, Long.MAX_VALUE);
+        boolean wasSweeping = state.sweeping;
+        state.sweeping = true;
+        saveState(state);
+
+        Set<String> staged = new HashSet<>(StagingArea.getAdded().values());
+        // Staged blobs are not reached from any branch, but committing them keeps their chunks
+        for (String blobId : staged) {
+            Blob blob = STAGED_BLOBS.read(blobId);
+            if (blob != null && blob.isChunked()) {
+                state.chunks.addAll(blob.getChunkIds());
+            }
+        }
+        Result result = new Result();
+        result.commits = sweep(COMMITS, state.commits::contains, result);
+        result.trees = sweep(TREES, state.trees::contains, result);
+        result.blobs = sweep(TRACKED_BLOBS, state.blobs::contains, result);
+        result.chunks = sweep(CHUNKS, state.chunks::contains, result);
+        result.stagedBlobs = sweep(STAGED_BLOBS, staged::contains, result);
+
+        // The commit graph and message index name every commit, so are rebuilt without the deleted ones
+        if (result.commits > 0 || wasSweeping) {
+            COMMIT_GRAPH.rebuild();
+            MESSAGE_INDEX.rebuild();
+        }
+        STATE_FILE.delete();
+        return result;
+    }
+
+    /** Sweeps one store, adding the bytes reclaimed to the result and returning the objects deleted */
+    private static <T extends Serializable & Digestable> long sweep(ObjectStore<T> store,
+            Predicate<String> keep, Result result) {
+        ObjectStore.Swept swept = store.sweep(keep);
+        result.bytesReclaimed += swept.getBytesReclaimed();
+        return swept.getDeleted().size();
+    }
+}
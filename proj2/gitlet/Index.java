@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Utils.*;
+
+/**
+ * A cache of the blob ids of the files in the working directory, keyed by their stat data,
+ * so that finding out whether a file changed does not mean reading and hashing it.
+ *
+ * For every file it has hashed, the index records the file's size, modification time and
+ * file key (its inode on Unix) along with the id of the blob holding its contents. As long as
+ * all three are unchanged, the recorded blob id is used instead of hashing the file again.
+ * A file modified within the timestamp resolution of the moment the index was written could
+ * keep the same stat data, so entries no older than the index file itself are always re-hashed.
+ *
+ * The index file starts with a magic number and the number of entries, followed by each
+ * entry's path, size, modification time in nanoseconds, file key and raw blob id.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Index {
+
+    /** Magic number at the start of every index */
+    static final int MAGIC = 0x47494458; // "GIDX"
+
+    /** The stat data of a file, and the id of the blob holding its contents */
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String fileKey;
+        final String blobId;
+
+        Entry(long size, long modified, String fileKey, String blobId) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.blobId = blobId;
+        }
+
+        /** Returns true if the file this entry was made from has the given stat data */
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && fileKey.equals(String.valueOf(attributes.fileKey()));
+        }
+    }
+
+    /** The index file */
+    private final File file;
+    /** The folder holding the files indexed, which their paths are relative to */
+    private final File workTree;
+
+    /** The entries of the index by path; lazily loaded */
+    private Map<String, Entry> entries;
+    /** Modification time of the index file when it was loaded; entries at least as recent
+     * may have changed without their stat data changing */
+    private long loadedModified;
+    /** Whether any entry changed since the index was loaded */
+    private volatile boolean changed;
+
+    public Index(File file, File workTree) {
+        this.file = file;
+        this.workTree = workTree;
+    }
+
+    /**
+     * Returns the id of the blob holding the current contents of the working file, or null
+     * if it does not exist. The file is only hashed if its stat data changed since it was
+     * last hashed.
+     */
+    public String blobId(String filename) {
+        load();
+        File workingFile = join(workTree, filename);
+        BasicFileAttributes attributes = stat(workingFile);
+        if (attributes == null || !attributes.isRegularFile()) {
+            if (entries.remove(filename) != null) {
+                changed = true;
+            }
+            return null;
+        }
+        Entry entry = entries.get(filename);
+        if (entry != null && entry.matches(attributes) && entry.modified < loadedModified) {
+            return entry.blobId;
+        }
+        String blobId = Blob.digestFile(workingFile, filename);
+        record(filename, attributes, blobId);
+        return blobId;
+    }
+
+    /** Records that the working file currently holds the contents of the given blob */
+    public void record(String filename, String blobId) {
+        load();
+        BasicFileAttributes attributes = stat(join(workTree, filename));
+        if (attributes != null) {
+            record(filename, attributes, blobId);
+        }
+    }
+
+    private void record(String filename, BasicFileAttributes attributes, String blobId) {
+        entries.put(filename, new Entry(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                String.valueOf(attributes.fileKey()), blobId));
+        changed = true;
+    }
+
+    /** Drops the loaded entries, so the index file is read again when next used */
+    public synchronized void refresh() {
+        entries = null;
+        changed = false;
+    }
+
+    /** Atomically rewrites the index file if any entry changed */
+    public synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            TreeMap<String, Entry> sorted = new TreeMap<>(entries);
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, Entry> entry : sorted.entrySet()) {
+                BinaryFormat.writeString(entry.getKey(), out);
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().modified);
+                BinaryFormat.writeString(entry.getValue().fileKey, out);
+                out.write(hexToBytes(entry.getValue().blobId));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        WriteBatch.writeNow(file, bytes.toByteArray());
+        changed = false;
+    }
+
+    /** Reads the index file, starting out empty if it does not exist */
+    private synchronized void load() {
+        if (entries != null) return;
+        ConcurrentHashMap<String, Entry> loaded = new ConcurrentHashMap<>();
+        BasicFileAttributes attributes = stat(file);
+        if (attributes != null) {
+            loadedModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(readContents(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IllegalArgumentException("not an index: " + file);
+                }
+                byte[] blobId = new byte[UID_LENGTH / 2];
+                for (int i = in.readInt(); i > 0; i--) {
+                    String filename = BinaryFormat.readString(in);
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    String fileKey = BinaryFormat.readString(in);
+                    in.readFully(blobId);
+                    loaded.put(filename, new Entry(size, modified, fileKey, bytesToHex(blobId)));
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        entries = loaded;
+    }
+
+    /** Returns the attributes of the file, or null if it does not exist */
+    private static BasicFileAttributes stat(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.MyersDiff.UNMATCHED;
+
+/**
+ * A three-way merge of the lines of a file, as done by diff3.
+ *
+ * Both sides are diffed against the base with {@link MyersDiff}. Base lines matched on both
+ * sides are stable; the lines between two stable runs form a chunk on each side. A chunk
+ * changed on one side only takes that side's lines, a chunk changed the same way on both sides
+ * takes either, and a chunk changed differently on each side is a conflict, written between
+ * conflict markers with the current side's lines first.
+ *
+ * @author Jordan Kilfoy
+ */
+public class LineMerge {
+
+    static final String CURRENT_MARKER = "<<<<<<< HEAD";
+    static final String SEPARATOR_MARKER = "=======";
+    static final String GIVEN_MARKER = ">>>>>>>";
+
+    /** The merged contents of a file, and the number of conflicting chunks in it */
+    public static class Result {
+        private final byte[] contents;
+        private final int conflicts;
+
+        Result(byte[] contents, int conflicts) {
+            this.contents = contents;
+            this.conflicts = conflicts;
+        }
+
+        public byte[] getContents() {
+            return contents;
+        }
+
+        /** Returns the number of chunks changed differently on both sides */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        public boolean hasConflicts() {
+            return conflicts > 0;
+        }
+    }
+
+    /**
+     * Merges the changes made to the base contents on the current and given sides.
+     * @param base The contents at the split point; empty if the file did not exist there
+     */
+    public static Result merge(byte[] base, byte[] current, byte[] given) {
+        List<String> baseLines = MyersDiff.Lines.split(base);
+        List<String> currentLines = MyersDiff.Lines.split(current);
+        List<String> givenLines = MyersDiff.Lines.split(given);
+        MyersDiff.Lines lines = new MyersDiff.Lines();
+        int[] baseNumbers = lines.number(baseLines);
+        int[] toCurrent = MyersDiff.matches(baseNumbers, lines.number(currentLines));
+        int[] toGiven = MyersDiff.matches(baseNumbers, lines.number(givenLines));
+
+        List<String> merged = new ArrayList<>();
+        int conflicts = 0;
+        int b = 0;
+        int c = 0;
+        int g = 0;
+        while (b < baseLines.size() || c < currentLines.size() || g < givenLines.size()) {
+            // Copy the stable lines, which are unchanged on both sides
+            if (b < baseLines.size() && toCurrent[b] == c && toGiven[b] == g) {
+                merged.add(baseLines.get(b));
+                b++;
+                c++;
+                g++;
+                continue;
+            }
+            // The chunk ends at the next base line matched on both sides, or at the end
+            int nextB = b;
+            while (nextB < baseLines.size() && (toCurrent[nextB] == UNMATCHED || toGiven[nextB] == UNMATCHED)) {
+                nextB++;
+            }
+            int nextC = nextB < baseLines.size() ? toCurrent[nextB] : currentLines.size();
+            int nextG = nextB < baseLines.size() ? toGiven[nextB] : givenLines.size();
+            List<String> baseChunk = baseLines.subList(b, nextB);
+            List<String> currentChunk = currentLines.subList(c, nextC);
+            List<String> givenChunk = givenLines.subList(g, nextG);
+
+            if (currentChunk.equals(baseChunk)) {
+                merged.addAll(givenChunk);
+            } else if (givenChunk.equals(baseChunk) || currentChunk.equals(givenChunk)) {
+                merged.addAll(currentChunk);
+            } else {
+                conflicts++;
+                merged.add(CURRENT_MARKER + System.lineSeparator());
+                addTerminated(merged, currentChunk);
+                merged.add(SEPARATOR_MARKER + System.lineSeparator());
+                addTerminated(merged, givenChunk);
+                merged.add(GIVEN_MARKER + System.lineSeparator());
+            }
+            b = nextB;
+            c = nextC;
+            g = nextG;
+        }
+        return new Result(MyersDiff.Lines.join(merged), conflicts);
+    }
+
+    /** Returns the whole-file conflict of the two contents: both, each in full, between conflict markers */
+    public static byte[] conflict(byte[] current, byte[] given) {
+        List<String> conflict = new ArrayList<>();
+        conflict.add(CURRENT_MARKER + System.lineSeparator());
+        conflict.addAll(MyersDiff.Lines.split(current));
+        conflict.add(SEPARATOR_MARKER + System.lineSeparator());
+        conflict.addAll(MyersDiff.Lines.split(given));
+        conflict.add(GIVEN_MARKER + System.lineSeparator());
+        return MyersDiff.Lines.join(conflict);
+    }
+
+    /** Returns true if the contents look like binary data rather than lines of text */
+    public static boolean isBinary(byte[] contents) {
+        for (int i = 0; i < Math.min(contents.length, 8000); i++) {
+            if (contents[i] == 0) return true;
+        }
+        return false;
+    }
+
+    /** Adds the lines, ending the last one with a line separator if it has no line terminator,
+     * so the conflict marker after it starts on a line of its own */
+    private static void addTerminated(List<String> merged, List<String> chunk) {
+        merged.addAll(chunk);
+        if (!chunk.isEmpty() && !chunk.get(chunk.size() - 1).endsWith("\n")) {
+            merged.add(System.lineSeparator());
+        }
+    }
+}
@@ -1,6 +1,17 @@
 package gitlet;
 
 import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Driver class for Gitlet, a subset of the Git version-control system.
@@ -18,121 +29,373 @@ public class Main {
     public static final File STAGE_DIR = Utils.join(GITLET_DIR, "stage");
 
     /** FolderManagers for managing serialized objects */
-    public static  FolderManager<Commit> COMMITS;
-    public static  FolderManager<Blob> TRACKED_BLOBS;
+    public static  ObjectStore<Commit> COMMITS;
+    public static  ObjectStore<Blob> TRACKED_BLOBS;
     public static  FolderManager<Branch> BRANCHES;
-    public static  FolderManager<Blob> STAGED_BLOBS;
+    public static  ObjectStore<Blob> STAGED_BLOBS;
+    public static  ObjectStore<Chunk> CHUNKS;
+    public static  ObjectStore<Tree> TREES;
+
+    /** Largest total size of the blobs kept in memory by each blob store, in bytes */
+    public static final long BLOB_CACHE_BYTES = 64L << 20;
+    /** Rough size of a blob object besides its contents, counted towards its cache weight */
+    public static final long BLOB_OVERHEAD_BYTES = 256;
+    /** Largest total size of the chunks kept in memory, in bytes; large files are streamed
+     *  through it chunk by chunk, so it need not hold a whole file */
+    public static final long CHUNK_CACHE_BYTES = 16L << 20;
+
+    /** Parents and generation numbers of every commit, for walking history without reading commits */
+    public static  CommitGraph COMMIT_GRAPH;
+
+    /** Log entries of every commit and an index of the words of their messages */
+    public static  MessageIndex MESSAGE_INDEX;
+
+    /** Stat data and blob ids of the working files, so unchanged files are not re-hashed */
+    public static  Index INDEX;
 
     static {
-        COMMITS = new FolderManager<>(Utils.join(GITLET_DIR, "commits"), Commit.class, Commit::digest);
-        TRACKED_BLOBS = new FolderManager<>(Utils.join(GITLET_DIR, "tracked_blobs"), Blob.class, Blob::digest);
+        COMMITS = new ObjectStore<>(Utils.join(GITLET_DIR, "commits"), Commit.class);
+        TRACKED_BLOBS = new ObjectStore<>(Utils.join(GITLET_DIR, "tracked_blobs"), Blob.class);
         BRANCHES = new FolderManager<>(Utils.join(GITLET_DIR, "branches"), Branch.class, Branch::getName);
-        STAGED_BLOBS = new FolderManager<>(Utils.join(STAGE_DIR, "staged_blobs"), Blob.class, Blob::digest);
+        STAGED_BLOBS = new ObjectStore<>(Utils.join(STAGE_DIR, "staged_blobs"), Blob.class);
+        CHUNKS = new ObjectStore<>(Utils.join(GITLET_DIR, "chunks"), Chunk.class, false);
+        TREES = new ObjectStore<>(Utils.join(GITLET_DIR, "trees"), Tree.class);
+        TRACKED_BLOBS.setCache(new WeightedCache<>(BLOB_CACHE_BYTES, Main::blobWeight));
+        STAGED_BLOBS.setCache(new WeightedCache<>(BLOB_CACHE_BYTES, Main::blobWeight));
+        CHUNKS.setCache(new WeightedCache<>(CHUNK_CACHE_BYTES, chunk -> BLOB_OVERHEAD_BYTES + chunk.getData().length));
+        COMMITS.setFormat(new CommitFormat());
+        TREES.setFormat(new TreeFormat());
+        BRANCHES.setFormat(new BranchFormat());
+        COMMIT_GRAPH = new CommitGraph(Utils.join(GITLET_DIR, "commit-graph"), COMMITS,
+                () -> BRANCHES.names().stream().map(name -> BRANCHES.read(name).getCommitId())
+                        .collect(Collectors.toList()));
+        MESSAGE_INDEX = new MessageIndex(Utils.join(GITLET_DIR, "commit-list"),
+                Utils.join(GITLET_DIR, "message-index"), COMMITS);
+        INDEX = new Index(Utils.join(GITLET_DIR, "index"), CWD);
     }
 
 
 
+    /** Returns the weight of a blob in a cache: roughly the memory it takes */
+    private static long blobWeight(Blob blob) {
+        return BLOB_OVERHEAD_BYTES + blob.getStoredSize();
+    }
+
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND1> <OPERAND2> ...
      */
     public static void main(String[] args) {
         try {
-            if (args.length == 0) {
-                throw new GitletException("Please enter a command.");
-            }
-
-            // Read the command
-            String firstArg = args[0];
-
-            // Initialize the repository if it does not exist
-            if (!GITLET_DIR.exists()) {
-                if (!firstArg.equals("init")) {
+            // Start or stop the daemon, which takes the repository lock for each command it runs
+            if (args.length > 0 && args[0].equals("daemon")) {
+                if (!GITLET_DIR.exists()) {
                     throw new GitletException("Not in an initialized Gitlet directory.");
                 }
-                Repository.init();
+                if (args.length == 1) {
+                    Daemon.serve();
+                } else if (args.length == 2 && args[1].equals("stop")) {
+                    Daemon.stop();
+                } else {
+                    throw new GitletException("Incorrect operands.");
+                }
                 return;
             }
 
-            // Handle all other commands
-            switch(firstArg) {
-                case "init":
-                    throw new GitletException("A Gitlet version-control system already exists in the current directory.");
-                case "add":
-                    verifyNumArguments(1, args.length - 1);
-                    StagingArea.add(args[1]);
-                    break;
-                case "rm":
-                    verifyNumArguments(1, args.length - 1);
-                    StagingArea.remove(args[1]);
-                    break;
-                case "commit":
-                    verifyNumArguments(1, args.length - 1);
-                    Repository.commit(args[1], null);
-                    break;
-                case "log":
-                    Repository.log();
-                    break;
-                case "global-log":
-                    Repository.globalLog();
-                    break;
-                case "find":
-                    verifyNumArguments(1, args.length - 1);
-                    Repository.find(args[1]);
-                    break;
-                case "status":
-                    Repository.status();
-                    break;
-                case "checkout":
-                    if (args.length == 2) {
-                        Repository.checkoutBranch(args[1]);
-                    } else if (args.length == 3 && args[1].equals("--")) {
-                        Repository.checkoutFileFromHead(args[2]);
-                    } else if (args.length == 4 && args[2].equals("--")) {
-                        String commitId = determineFullCommitId(args[1]);
-                        Repository.checkoutFileFromCommit(args[3], commitId);
-                    } else {
+            execute(args);
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** Runs a command, initializing the repository if it does not exist */
+    @SuppressWarnings("try")
+    static void execute(String[] args) {
+        // Read the command
+        if (args.length == 0) {
+            throw new GitletException("Please enter a command.");
+        }
+        String firstArg = args[0];
+
+        // Initialize the repository if it does not exist
+        if (!GITLET_DIR.exists()) {
+            if (!firstArg.equals("init")) {
+                throw new GitletException("Not in an initialized Gitlet directory.");
+            }
+            Repository.init();
+            return;
+        }
+
+        // Handle all other commands while holding the repository lock, which is never referenced
+        try (RepositoryLock lock = RepositoryLock.acquire(GITLET_DIR, !isReadOnly(args))) {
+            try {
+                run(args);
+            } finally {
+                // Keep the blob ids of any files hashed while running the command
+                INDEX.save();
+            }
+        }
+    }
+
+    /**
+     * Drops everything read from the repository that another process could have changed
+     * since, so the next command reads it again. Objects stored under their digest never
+     * change, so they stay cached. Used by the daemon before running each command.
+     */
+    static void forgetMutableState() {
+        Repository.forgetHead();
+        StagingArea.forget();
+        Config.forget();
+        SparseCheckout.forget();
+        BRANCHES.forget();
+        for (ObjectStore<?> store : Arrays.asList(COMMITS, TREES, TRACKED_BLOBS, STAGED_BLOBS, CHUNKS)) {
+            store.refresh();
+        }
+        COMMIT_GRAPH.refresh();
+        MESSAGE_INDEX.refresh();
+        INDEX.refresh();
+    }
+
+    /** Commands that never change the repository, which can run alongside each other */
+    private static final Set<String> READ_ONLY_COMMANDS = Set.of("log", "global-log", "find", "status", "stats", "diff", "fsck");
+
+    /** Returns true if the command only reads the repository */
+    static boolean isReadOnly(String[] args) {
+        return READ_ONLY_COMMANDS.contains(args[0]) || args[0].equals("config") && args.length == 2
+                || args[0].equals("sparse-checkout") && args.length == 2 && args[1].equals("list")
+                || args[0].equals("gc") && args.length == 2 && !args[1].equals("--max-time");
+    }
+
+    /** Runs a command in an initialized repository */
+    static void run(String[] args) {
+        String firstArg = args[0];
+        switch(firstArg) {
+            case "init":
+                throw new GitletException("A Gitlet version-control system already exists in the current directory.");
+            case "add":
+                verifyNumArguments(1, args.length - 1);
+                StagingArea.add(Arrays.asList(args).subList(1, args.length));
+                break;
+            case "rm":
+                verifyNumArguments(1, args.length - 1);
+                StagingArea.remove(args[1]);
+                break;
+            case "commit":
+                verifyNumArguments(1, args.length - 1);
+                Repository.commit(args[1], null);
+                break;
+            case "log":
+                log(args);
+                break;
+            case "global-log":
+                Repository.globalLog();
+                break;
+            case "find":
+                verifyNumArguments(1, args.length - 1);
+                Repository.find(args[1]);
+                break;
+            case "status":
+                Repository.status();
+                break;
+            case "checkout":
+                if (args.length == 2) {
+                    Repository.checkoutBranch(args[1]);
+                } else if (args.length == 3 && args[1].equals("--")) {
+                    Repository.checkoutFileFromHead(args[2]);
+                } else if (args.length == 4 && args[2].equals("--")) {
+                    String commitId = determineFullCommitId(args[1]);
+                    Repository.checkoutFileFromCommit(args[3], commitId);
+                } else {
+                    throw new GitletException("Incorrect operands.");
+                }
+                break;
+            case "branch":
+                verifyNumArguments(1, args.length - 1);
+                Repository.createBranch(args[1]);
+                break;
+            case "rm-branch":
+                verifyNumArguments(1, args.length - 1);
+                Repository.removeBranch(args[1]);
+                break;
+            case "reset":
+                verifyNumArguments(1, args.length - 1);
+                String commitId = determineFullCommitId(args[1]);
+                Repository.reset(commitId);
+                break;
+            case "merge":
+                verifyNumArguments(1, args.length - 1);
+                Repository.merge(args[1]);
+                break;
+            case "add-remote":
+                verifyNumArguments(2, args.length - 1);
+                Repository.addRemote(args[1], args[2]);
+                break;
+            case "rm-remote":
+                verifyNumArguments(1, args.length - 1);
+                Repository.removeRemote(args[1]);
+                break;
+            case "fetch":
+                verifyNumArguments(2, args.length - 1);
+                Repository.fetch(args[1], args[2]);
+                break;
+            case "push":
+                verifyNumArguments(2, args.length - 1);
+                Repository.push(args[1], args[2]);
+                break;
+            case "pull":
+                verifyNumArguments(2, args.length - 1);
+                Repository.pull(args[1], args[2]);
+                break;
+            case "diff":
+                if (args.length > 3) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                Repository.diff(args.length > 1 ? determineFullCommitId(args[1]) : null,
+                        args.length > 2 ? determineFullCommitId(args[2]) : null);
+                break;
+            case "sparse-checkout":
+                sparseCheckout(args);
+                break;
+            case "gc":
+                gc(args);
+                break;
+            case "stats":
+                Repository.stats();
+                break;
+            case "fsck":
+                Fsck.check();
+                break;
+            case "migrate":
+                Repository.migrate();
+                break;
+            case "daemon":
+                throw new GitletException("A gitlet daemon is already running for this repository.");
+            case "config":
+                verifyNumArguments(1, args.length - 1);
+                if (args.length == 2) {
+                    String value = Config.get(args[1]);
+                    if (value != null) {
+                        System.out.println(value);
+                    }
+                } else {
+                    Config.set(args[1], args[2]);
+                }
+                break;
+            default:
+                throw new GitletException("No command with that name exists.");
+        }
+    }
+
+    /** Runs log with its options: -n COUNT, --since DATE and --first-parent */
+    private static void log(String[] args) {
+        int maxCount = Integer.MAX_VALUE;
+        Date since = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n":
+                    verifyNumArguments(i + 1, args.length - 1);
+                    try {
+                        maxCount = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException excp) {
+                        throw new GitletException("Incorrect operands.");
+                    }
+                    if (maxCount < 0) {
                         throw new GitletException("Incorrect operands.");
                     }
                     break;
-                case "branch":
-                    verifyNumArguments(1, args.length - 1);
-                    Repository.createBranch(args[1]);
-                    break;
-                case "rm-branch":
-                    verifyNumArguments(1, args.length - 1);
-                    Repository.removeBranch(args[1]);
-                    break;
-                case "reset":
-                    verifyNumArguments(1, args.length - 1);
-                    String commitId = determineFullCommitId(args[1]);
-                    Repository.reset(commitId);
-                    break;
-                case "merge":
-                    verifyNumArguments(1, args.length - 1);
-                    Repository.merge(args[1]);
+                case "--since":
+                    verifyNumArguments(i + 1, args.length - 1);
+                    since = parseDate(args[++i]);
                     break;
+                case "--first-parent":
+                    break; // log always follows first parents
                 default:
-                    throw new GitletException("No command with that name exists.");
+                    throw new GitletException("Incorrect operands.");
             }
-        } catch (GitletException e) {
-            System.out.println(e.getMessage());
-            return;
         }
+        Repository.log(maxCount, since);
     }
 
-    // if a shortened commit id is used,
-    // find the first commitId that starts with the input prefix
-    private static String determineFullCommitId(String input) {
-        if (input.length() < 40) {
-            for (Commit commit : COMMITS) {
-                if (commit.digest().startsWith(input)) {
-                    return commit.digest();
-                }
+    /** Runs gc: in the foreground, optionally for at most --max-time SECONDS of marking, or
+     * with --background in the daemon, or --status to report on the background collection */
+    private static void gc(String[] args) {
+        if (args.length == 1) {
+            Repository.gc(Long.MAX_VALUE);
+        } else if (args.length == 3 && args[1].equals("--max-time")) {
+            try {
+                Repository.gc(TimeUnit.SECONDS.toMillis(Long.parseLong(args[2])));
+            } catch (NumberFormatException excp) {
+                throw new GitletException("Incorrect operands.");
             }
+        } else if (args.length == 2 && args[1].equals("--background")) {
+            GarbageCollector.startInBackground();
+            System.out.println("Started garbage collection in the background.");
+        } else if (args.length == 2 && args[1].equals("--status")) {
+            System.out.println(GarbageCollector.status());
         } else {
-            return input;
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Runs sparse-checkout: set PATTERN..., list, or disable */
+    private static void sparseCheckout(String[] args) {
+        verifyNumArguments(1, args.length - 1);
+        switch (args[1]) {
+            case "set":
+                verifyNumArguments(2, args.length - 1);
+                Repository.sparseCheckout(Arrays.asList(args).subList(2, args.length));
+                break;
+            case "list":
+                List<String> patterns = SparseCheckout.getPatterns();
+                if (patterns != null) {
+                    patterns.forEach(System.out::println);
+                }
+                break;
+            case "disable":
+                Repository.sparseCheckout(null);
+                break;
+            default:
+                throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Parses a date given as 2024-01-31, 2024-01-31T12:00[:00] in local time, or with an offset */
+    static Date parseDate(String input) {
+        try {
+            return Date.from(OffsetDateTime.parse(input).toInstant());
+        } catch (DateTimeParseException excp) {
+            // Not a date with an offset; try local dates and times
+        }
+        try {
+            return Date.from(LocalDateTime.parse(input).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException excp) {
+            // Not a local date and time; try a plain date
+        }
+        try {
+            return Date.from(LocalDate.parse(input).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException excp) {
+            throw new GitletException("Invalid date: " + input);
+        }
+    }
+
+    /** The most candidates listed when a shortened commit id is ambiguous */
+    private static final int MAX_CANDIDATES = 10;
+
+    /**
+     * Returns the full id of the only commit whose id starts with the input, which may be a
+     * full id or any shortened one. Matches are found by binary searching the sorted ids of
+     * the commit store, rather than by listing every commit.
+     */
+    static String determineFullCommitId(String input) {
+        List<String> matches = COMMITS.withPrefix(input.toLowerCase(), MAX_CANDIDATES + 1);
+        if (matches.isEmpty()) {
+            throw new GitletException("No commit with that id exists.");
+        }
+        if (matches.size() > 1) {
+            String candidates = String.join(", ", matches.subList(0, Math.min(MAX_CANDIDATES, matches.size())));
+            throw new GitletException("Commit id " + input + " is ambiguous; it could be " + candidates
+                    + (matches.size() > MAX_CANDIDATES ? " and others" : "") + ".");
         }
-        throw new GitletException("No commit with that id exists.");
+        return matches.get(0);
     }
 
     public static void verifyNumArguments(int expected, int actual) {
@@ -0,0 +1,433 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/**
+ * A persistent list of every commit in the repository with the fields its log entry shows, and
+ * an inverted index from the words of commit messages to the ids of the commits using them, so
+ * that `global-log` and `find` never read the commits themselves.
+ *
+ * The commit list starts with a magic number, followed by one entry per commit: its id, both
+ * parent ids, timestamp and message. Entries are appended as commits are made, so the list is
+ * in timestamp order except for commits made out of order, and is sorted when read.
+ *
+ * The message index starts with a magic number, the number of sorted words and the length of
+ * the sorted part, followed by a table of the offset of each word's entry. Each entry is a
+ * word followed by the number of commits using it and their raw ids. Words are binary
+ * searched in place through a read-only mapping of the file. Words of new commits are appended
+ * unsorted after the sorted part, one word and id at a time, and merged into it once there
+ * are many of them.
+ *
+ * Both files are rebuilt from the commits in the store if either is missing.
+ *
+ * @author Jordan Kilfoy
+ */
+public class MessageIndex {
+
+    /** Magic number at the start of every commit list */
+    static final int LIST_MAGIC = 0x47434c53; // "GCLS"
+    /** Magic number at the start of every message index */
+    static final int INDEX_MAGIC = 0x474d4958; // "GMIX"
+    /** Length of the message index header: magic, sorted word count and sorted part length */
+    static final int INDEX_HEADER = 12;
+    /** Tails shorter than this are never merged into the sorted part */
+    static final int MIN_TAIL = 1024;
+
+    /** The fields of a commit shown by its log entry */
+    public static class Entry {
+        private final String id;
+        private final String parentId;
+        private final String secondParentId;
+        private final long timestamp;
+        private final String message;
+
+        Entry(String id, String parentId, String secondParentId, long timestamp, String message) {
+            this.id = id;
+            this.parentId = parentId;
+            this.secondParentId = secondParentId;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+
+        Entry(String id, Commit commit) {
+            this(id, commit.getParentId(), commit.getSecondParentId(), commit.getTimestamp().getTime(),
+                    commit.getMessage());
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /** Returns the commit's log entry, as printed by log */
+        @Override
+        public String toString() {
+            return Commit.format(id, parentId, secondParentId, new Date(timestamp), message);
+        }
+    }
+
+    /** The commit list file */
+    private final File listFile;
+    /** The message index file */
+    private final File indexFile;
+    /** The commits, read to rebuild missing files and to check matches */
+    private final ObjectStore<Commit> commits;
+
+    /** The entries of the commit list, in the order they were appended; lazily loaded */
+    private List<Entry> entries;
+    /** The ids of the entries */
+    private Set<String> ids;
+    /** Length of the commit list up to its last complete entry */
+    private long listLength;
+
+    /** Read-only mapping of the message index; lazily loaded */
+    private ByteBuffer mapped;
+    /** The number of sorted words in the mapping */
+    private int sorted;
+    /** The commit ids of each word appended after the sorted part */
+    private Map<String, Set<String>> tail;
+    /** The number of word and id pairs appended after the sorted part */
+    private int tailCount;
+    /** Length of the message index up to its last complete tail pair */
+    private long indexLength;
+
+    public MessageIndex(File listFile, File indexFile, ObjectStore<Commit> commits) {
+        this.listFile = listFile;
+        this.indexFile = indexFile;
+        this.commits = commits;
+    }
+
+    /**
+     * Adds the commit to the index and the list, unless it is already listed. Its words are
+     * indexed before it is listed, so a listed commit is always indexed; if a command is
+     * interrupted in between, the words are indexed again when the commit is next added.
+     */
+    public synchronized void add(Commit commit) {
+        load();
+        String id = commit.digest();
+        if (ids.contains(id)) return;
+        Entry entry = new Entry(id, commit);
+
+        ByteArrayOutputStream pairs = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(pairs)) {
+            for (String word : words(entry.message)) {
+                BinaryFormat.writeString(word, out);
+                out.write(hexToBytes(id));
+                tail.computeIfAbsent(word, w -> new HashSet<>()).add(id);
+                tailCount++;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        indexLength = append(indexFile, indexLength, pairs.toByteArray());
+        if (tailCount > Math.max(MIN_TAIL, sorted / 16)) {
+            writeIndex(postings());
+        }
+
+        listLength = append(listFile, listLength, encode(entry));
+        entries.add(entry);
+        ids.add(id);
+    }
+
+    /** Returns the entries of every stored commit, from oldest to newest; a commit is listed
+     * just before it is stored, so a command interrupted in between leaves one that is not */
+    public synchronized List<Entry> byTimestamp() {
+        load();
+        List<Entry> byTimestamp = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (commits.contains(entry.id)) {
+                byTimestamp.add(entry);
+            }
+        }
+        // Nearly always already in order, which the sort only takes a single pass to confirm
+        byTimestamp.sort(Comparator.comparingLong(Entry::getTimestamp));
+        return byTimestamp;
+    }
+
+    /** Returns the ids of the commits with exactly the given message, in sorted order */
+    public synchronized TreeSet<String> find(String message) {
+        loadIndex();
+        Set<String> candidates = null;
+        for (String word : words(message)) {
+            Set<String> commitIds = lookup(word);
+            if (candidates == null) {
+                candidates = commitIds;
+            } else {
+                candidates.retainAll(commitIds);
+            }
+            if (candidates.isEmpty()) break;
+        }
+        TreeSet<String> found = new TreeSet<>();
+        for (String id : candidates) {
+            Commit commit = commits.read(id);
+            if (commit != null && commit.getMessage().equals(message)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    /** Rewrites both files from the commits in the store */
+    public synchronized void rebuild() {
+        List<Entry> rebuilt = new ArrayList<>();
+        for (String id : commits.names()) {
+            rebuilt.add(new Entry(id, commits.read(id)));
+        }
+        rebuilt.sort(Comparator.comparingLong(Entry::getTimestamp));
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        TreeMap<String, Set<String>> postings = new TreeMap<>();
+        try (DataOutputStream out = new DataOutputStream(list)) {
+            out.writeInt(LIST_MAGIC);
+            for (Entry entry : rebuilt) {
+                out.write(encode(entry));
+                for (String word : words(entry.message)) {
+                    postings.computeIfAbsent(word, w -> new TreeSet<>()).add(entry.id);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        WriteBatch.writeNow(listFile, list.toByteArray());
+        writeIndex(postings);
+        entries = null;
+    }
+
+    /** Drops the loaded list and index, so they are read again when next used */
+    public synchronized void refresh() {
+        entries = null;
+        mapped = null;
+    }
+
+    /** Returns the distinct lowercase words of a message; a message without any letters or
+     * digits is indexed under the empty word */
+    static Set<String> words(String message) {
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= message.length(); i++) {
+            if (i < message.length() && Character.isLetterOrDigit(message.charAt(i))) {
+                word.append(Character.toLowerCase(message.charAt(i)));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (words.isEmpty()) {
+            words.add("");
+        }
+        return words;
+    }
+
+    /** Returns the ids of the commits whose message contains the word */
+    private Set<String> lookup(String word) {
+        Set<String> commitIds = new HashSet<>(tail.getOrDefault(word, Collections.emptySet()));
+        byte[] target = word.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = sorted - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int offset = mapped.getInt(INDEX_HEADER + 4 * mid);
+            int cmp = wordAt(offset).compareTo(word);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                int idsOffset = offset + 4 + target.length;
+                int count = mapped.getInt(idsOffset);
+                byte[] id = new byte[PackFile.ID_BYTES];
+                for (int i = 0; i < count; i++) {
+                    mapped.get(idsOffset + 4 + i * PackFile.ID_BYTES, id);
+                    commitIds.add(bytesToHex(id));
+                }
+                break;
+            }
+        }
+        return commitIds;
+    }
+
+    /** Returns the word of the sorted entry at the given offset */
+    private String wordAt(int offset) {
+        byte[] word = new byte[mapped.getInt(offset)];
+        mapped.get(offset + 4, word);
+        return new String(word, StandardCharsets.UTF_8);
+    }
+
+    /** Returns every word in the index, mapped to the ids of the commits using it */
+    private TreeMap<String, Set<String>> postings() {
+        TreeMap<String, Set<String>> postings = new TreeMap<>();
+        for (int i = 0; i < sorted; i++) {
+            String word = wordAt(mapped.getInt(INDEX_HEADER + 4 * i));
+            postings.put(word, new TreeSet<>(lookup(word)));
+        }
+        for (Map.Entry<String, Set<String>> words : tail.entrySet()) {
+            postings.computeIfAbsent(words.getKey(), w -> new TreeSet<>()).addAll(words.getValue());
+        }
+        return postings;
+    }
+
+    /** Atomically replaces the message index with a sorted index of the given words, then maps it */
+    private void writeIndex(TreeMap<String, Set<String>> postings) {
+        List<byte[]> words = new ArrayList<>();
+        for (String word : postings.keySet()) {
+            words.add(word.getBytes(StandardCharsets.UTF_8));
+        }
+        int[] offsets = new int[words.size()];
+        int length = INDEX_HEADER + 4 * words.size();
+        int i = 0;
+        for (Set<String> commitIds : postings.values()) {
+            offsets[i] = length;
+            length += 4 + words.get(i).length + 4 + commitIds.size() * PackFile.ID_BYTES;
+            i++;
+        }
+        ByteBuffer contents = ByteBuffer.allocate(length);
+        contents.putInt(INDEX_MAGIC);
+        contents.putInt(words.size());
+        contents.putInt(length);
+        for (int offset : offsets) {
+            contents.putInt(offset);
+        }
+        i = 0;
+        for (Set<String> commitIds : postings.values()) {
+            byte[] word = words.get(i++);
+            contents.putInt(word.length);
+            contents.put(word);
+            contents.putInt(commitIds.size());
+            for (String id : commitIds) {
+                contents.put(hexToBytes(id));
+            }
+        }
+        WriteBatch.writeNow(indexFile, contents.array());
+        mapIndex();
+    }
+
+    /** Reads both files, rebuilding them first if either does not exist */
+    private void load() {
+        loadIndex();
+        if (entries == null) {
+            loadList();
+        }
+    }
+
+    /** Maps the message index, rebuilding both files first if either does not exist */
+    private void loadIndex() {
+        if (mapped != null) return;
+        if (!listFile.exists() || !indexFile.exists()) {
+            rebuild();
+        } else {
+            mapIndex();
+        }
+    }
+
+    private void loadList() {
+        byte[] contents = readContents(listFile);
+        ByteArrayInputStream bytes = new ByteArrayInputStream(contents);
+        entries = new ArrayList<>();
+        ids = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(bytes)) {
+            if (contents.length < 4 || in.readInt() != LIST_MAGIC) {
+                throw new IllegalArgumentException("not a commit list: " + listFile);
+            }
+            listLength = 4;
+            while (bytes.available() > 0) {
+                Entry entry = new Entry(BinaryFormat.readId(in), BinaryFormat.readId(in), BinaryFormat.readId(in),
+                        in.readLong(), BinaryFormat.readString(in));
+                entries.add(entry);
+                ids.add(entry.id);
+                listLength = contents.length - bytes.available();
+            }
+        } catch (EOFException excp) {
+            // An entry left partly written by an interrupted command; it is overwritten by the next one
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private void mapIndex() {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (mapped.limit() < INDEX_HEADER || mapped.getInt(0) != INDEX_MAGIC) {
+            throw new IllegalArgumentException("not a message index: " + indexFile);
+        }
+        sorted = mapped.getInt(4);
+        int position = mapped.getInt(8);
+        tail = new HashMap<>();
+        tailCount = 0;
+        byte[] id = new byte[PackFile.ID_BYTES];
+        while (true) {
+            indexLength = position;
+            if (mapped.limit() - position < 4) break;
+            int wordLength = mapped.getInt(position);
+            if (wordLength < 0 || mapped.limit() - position - 4 < (long) wordLength + PackFile.ID_BYTES) break;
+            byte[] word = new byte[wordLength];
+            mapped.get(position + 4, word);
+            mapped.get(position + 4 + wordLength, id);
+            tail.computeIfAbsent(new String(word, StandardCharsets.UTF_8), w -> new HashSet<>()).add(bytesToHex(id));
+            tailCount++;
+            position += 4 + wordLength + PackFile.ID_BYTES;
+        }
+    }
+
+    /** Writes the bytes at the given position of the file, dropping anything after it left
+     * by an interrupted command, and returns the new length of the file */
+    private static long append(File file, long position, byte[] bytes) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return position + bytes.length;
+    }
+
+    /** Returns the bytes of an entry of the commit list */
+    private static byte[] encode(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryFormat.writeId(entry.id, out);
+            BinaryFormat.writeId(entry.parentId, out);
+            BinaryFormat.writeId(entry.secondParentId, out);
+            out.writeLong(entry.timestamp);
+            BinaryFormat.writeString(entry.message, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the longest common subsequence of two sequences of lines, using Myers' O((N+M)D)
+ * difference algorithm in its linear space form: each step searches from both ends at once
+ * for the middle of the shortest edit script, then recurses on the halves on either side.
+ * Common leading and trailing lines are matched before searching, which makes the usual case
+ * of a few small changes in a large file fast.
+ *
+ * Lines are compared as ints, so that callers intern each distinct line once; see
+ * {@link Lines}.
+ *
+ * @author Jordan Kilfoy
+ */
+public class MyersDiff {
+
+    /** Marks a line matched by no line of the other sequence */
+    public static final int UNMATCHED = -1;
+
+    /**
+     * Returns, for each line of a, the index of the line of b it is matched with, or UNMATCHED.
+     * Matched lines are equal, in increasing order in both sequences, and as many as possible.
+     */
+    public static int[] matches(int[] a, int[] b) {
+        int[] matches = new int[a.length];
+        Arrays.fill(matches, UNMATCHED);
+        match(a, 0, a.length, b, 0, b.length, matches);
+        return matches;
+    }
+
+    /** Matches the lines of a[aLo, aHi) with those of b[bLo, bHi) */
+    private static void match(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int[] matches) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            matches[aLo++] = bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            matches[--aHi] = --bHi;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] split = middle(a, aLo, aHi, b, bLo, bHi);
+        if (split == null) {
+            return; // nothing in common
+        }
+        match(a, aLo, split[0], b, bLo, split[1], matches);
+        match(a, split[0], aHi, b, split[1], bHi, matches);
+    }
+
+    /**
+     * Searches forwards from the start and backwards from the end of both ranges at once, by
+     * increasing numbers of edits, until the two searches meet; the shortest edit script passes
+     * through the point where they do.
+     * @return The point in a and b the shortest edit script passes through halfway, or null
+     *         if the ranges have no line in common
+     */
+    private static int[] middle(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        // forward[k] and backward[k] hold the furthest x reached on diagonal k = x - y
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        // If the difference in lengths is odd, the forward search is the one to detect the overlap
+        boolean front = delta % 2 != 0;
+        // Diagonals that ran off the edge of the ranges are skipped from then on
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1 = k1 == -d || k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1]
+                        ? forward[k1Offset + 1] : forward[k1Offset - 1] + 1;
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1End += 2;
+                } else if (y1 > m) {
+                    k1Start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1
+                            && x1 >= n - backward[k2Offset]) {
+                        return new int[] {aLo + x1, bLo + y1};
+                    }
+                }
+            }
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2 = k2 == -d || k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1]
+                        ? backward[k2Offset + 1] : backward[k2Offset - 1] + 1;
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                backward[k2Offset] = x2;
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return new int[] {aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The lines of one or more texts, with each distinct line numbered the same way in all
+     * of them so that lines can be compared as ints. Bytes are read as ISO-8859-1, which maps
+     * each byte to one char, so any contents split into lines and joined back are unchanged.
+     */
+    public static class Lines {
+        /** Number of each distinct line seen so far */
+        private final Map<String, Integer> numbers = new HashMap<>();
+
+        /** Splits the contents into lines, each keeping its line terminator */
+        public static List<String> split(byte[] contents) {
+            String text = new String(contents, StandardCharsets.ISO_8859_1);
+            List<String> lines = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    lines.add(text.substring(start, i + 1));
+                    start = i + 1;
+                }
+            }
+            if (start < text.length()) {
+                lines.add(text.substring(start));
+            }
+            return lines;
+        }
+
+        /** Returns the bytes of the given lines joined together */
+        public static byte[] join(List<String> lines) {
+            return String.join("", lines).getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        /** Returns the number of each line, numbering lines not seen before */
+        public int[] number(List<String> lines) {
+            int[] numbered = new int[lines.size()];
+            for (int i = 0; i < numbered.length; i++) {
+                numbered[i] = numbers.computeIfAbsent(lines.get(i), line -> numbers.size());
+            }
+            return numbered;
+        }
+    }
+}
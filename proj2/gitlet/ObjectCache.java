@@ -0,0 +1,64 @@
+package gitlet;
+
+/**
+ * A cache of the objects a FolderManager has read or persisted, keyed by their file name.
+ * Implementations decide how many objects to keep, and must be safe to use from several
+ * threads at once.
+ * @param <T> The type of object cached
+ *
+ * @author Jordan Kilfoy
+ */
+public interface ObjectCache<T> {
+
+    /** Returns the cached object with the given name, or null if it is not cached */
+    T get(String name);
+
+    /** Caches the object under the given name */
+    void put(String name, T obj);
+
+    /** Drops the object with the given name from the cache */
+    void remove(String name);
+
+    /** Drops every object from the cache */
+    void clear();
+
+    /** Returns the counters of this cache since it was created */
+    Stats stats();
+
+    /** A snapshot of the counters of a cache */
+    class Stats {
+        /** Lookups that found the object */
+        public final long hits;
+        /** Lookups that found the object only through a soft reference */
+        public final long softHits;
+        /** Lookups that did not find the object */
+        public final long misses;
+        /** Objects evicted to keep the cache within its bounds */
+        public final long evictions;
+        /** Number of objects held strongly */
+        public final long size;
+        /** Total weight of the objects held strongly */
+        public final long weight;
+
+        public Stats(long hits, long softHits, long misses, long evictions, long size, long weight) {
+            this.hits = hits;
+            this.softHits = softHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /** Returns the fraction of lookups that found the object, or 0 if there were none */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits (%d soft), %d misses, %d evictions, %d objects weighing %d",
+                    hits, softHits, misses, evictions, size, weight);
+        }
+    }
+}
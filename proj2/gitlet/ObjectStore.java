@@ -0,0 +1,338 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static gitlet.Utils.*;
+
+/**
+ * A FolderManager for content-addressed objects, which are always stored under their SHA-1 digest.
+ * New objects are written loose, as one file each, like in a regular FolderManager. Running
+ * {@link #repack()} moves every loose object into a single append-only {@link PackFile}
+ * kept in the "pack" subfolder, after which reading an object costs a binary search of the
+ * pack index plus one positioned read instead of a file per object.
+ * Since an object's name is its digest, an object that is already stored is never rewritten.
+ * The ids of loose objects are tracked by a memory-mapped {@link FolderIndex} kept next to the
+ * folder, so lookups and listings never stat or scan the folder itself.
+ * Objects are compressed by a {@link Codec} before being stored, and tagged with it so that
+ * reads detect how each object was stored.
+ * Objects can be persisted and read from several threads at once.
+ * @param <T> The type of object stored
+ */
+public class ObjectStore<T extends Serializable & Digestable> extends FolderManager<T> {
+
+    /** Subfolder holding the packs of this store */
+    final File packFolder;
+    /** Index of the loose objects in this store */
+    final FolderIndex index;
+    /** The packs of this store; lazily loaded */
+    private List<PackFile> packs;
+    /** The codec new objects are stored with; lazily loaded from the config */
+    private Codec codec;
+
+    public ObjectStore(File folder, Class<T> type) {
+        this(folder, type, true);
+    }
+
+    public ObjectStore(File folder, Class<T> type, boolean cached) {
+        super(folder, type, Digestable::digest, cached);
+        this.packFolder = join(folder, "pack");
+        this.index = new FolderIndex(join(folder.getParentFile(), folder.getName() + ".idx"), this::scanLoose);
+    }
+
+    /** Returns the packs of this store, loading their indices if necessary */
+    synchronized List<PackFile> getPacks() {
+        if (packs == null) {
+            packs = new ArrayList<>();
+            List<String> filenames = plainFilenamesIn(packFolder);
+            if (filenames != null) {
+                for (String filename : filenames) {
+                    if (filename.endsWith(".idx")) {
+                        packs.add(new PackFile(join(packFolder, filename)));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /**
+     * Drops the loaded packs, loose object index and codec, which other processes may have
+     * changed, so they are loaded again when next used. Cached objects are kept, since an
+     * object never changes under the same digest.
+     */
+    public synchronized void refresh() {
+        packs = null;
+        codec = null;
+        index.refresh();
+    }
+
+    /** Returns the codec new objects are stored with */
+    public synchronized Codec getCodec() {
+        if (codec == null) {
+            codec = Codecs.fromConfig();
+        }
+        return codec;
+    }
+
+    /** Sets the codec new objects are stored with, overriding the config */
+    public synchronized void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void persist(T obj, String fileName) {
+        if (obj == null || contains(fileName)) return; // objects never change under the same digest
+        // Indexed only once the file is in place, so the index never names a missing object
+        WriteBatch.write(join(folder, fileName), Codecs.encode(getCodec(), encode(obj)), () -> index.add(fileName));
+        remember(fileName, obj);
+    }
+
+    @Override
+    public T read(String fileName) {
+        T cachedObj = cache.get(fileName);
+        if (cachedObj != null) return cachedObj;
+        if ("".equals(fileName)) return null;
+        T obj = readStored(fileName);
+        if (obj != null) remember(fileName, obj);
+        return obj;
+    }
+
+    /** Decodes the object from the bytes stored under the given name, bypassing the cache,
+     * or returns null if it is not stored */
+    public T readStored(String fileName) {
+        byte[] stored = readRaw(fileName);
+        return stored == null ? null : decode(Codecs.decode(stored));
+    }
+
+    /** Returns true if the index names a loose object under the given name whose file is gone */
+    public boolean isLooseFileMissing(String fileName) {
+        return index.contains(fileName) && !join(folder, fileName).isFile();
+    }
+
+    @Override
+    public boolean contains(String fileName) {
+        return index.contains(fileName) || findPack(fileName) != null || WriteBatch.isPending(join(folder, fileName));
+    }
+
+    @Override
+    public void clear(String fileName) {
+        super.clear(fileName);
+        index.remove(fileName);
+    }
+
+    @Override
+    public void clearAll() {
+        for (String fileName : index.ids()) {
+            super.clear(fileName);
+        }
+        index.clear();
+    }
+
+    /** Returns the names of all loose and packed objects, in lexicographic order */
+    @Override
+    public List<String> names() {
+        TreeSet<String> names = new TreeSet<>(index.ids());
+        for (PackFile pack : getPacks()) {
+            names.addAll(pack.ids());
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Returns up to limit names of loose and packed objects starting with the given prefix,
+     * in lexicographic order, without listing the whole store.
+     */
+    public List<String> withPrefix(String prefix, int limit) {
+        if (!prefix.matches("[0-9a-f]{0," + UID_LENGTH + "}")) {
+            return new ArrayList<>();
+        }
+        TreeSet<String> names = new TreeSet<>();
+        names.addAll(index.withPrefix(prefix, limit));
+        for (PackFile pack : getPacks()) {
+            names.addAll(pack.withPrefix(prefix, limit));
+        }
+        return names.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Moves all loose objects into a new pack, merging in the contents of any existing packs,
+     * so that the store ends up with at most one pack and no loose objects.
+     * @return The number of loose objects that were packed
+     */
+    public int repack() {
+        List<String> loose = index.ids();
+        if (loose.isEmpty() && getPacks().size() <= 1) {
+            return 0;
+        }
+        packFolder.mkdir();
+        List<PackFile> oldPacks = new ArrayList<>(getPacks());
+        PackFile newPack = PackFile.write(packFolder, names(), this::readRaw);
+
+        // The new pack holds everything, so the old packs and loose files can go
+        for (PackFile pack : oldPacks) {
+            if (!pack.getIndexFile().equals(newPack.getIndexFile())) {
+                pack.delete();
+            }
+        }
+        for (String filename : loose) {
+            join(folder, filename).delete();
+        }
+        index.clear();
+        packs = null;
+        return loose.size();
+    }
+
+    /**
+     * Deletes every object that is not to be kept, and moves the rest into one pack as
+     * {@link #repack()} does. The caller holds the repository lock exclusively.
+     * @param keep Returns true for the ids of the objects to keep
+     * @return The ids of the objects deleted, and the bytes they took on disk
+     */
+    public Swept sweep(Predicate<String> keep) {
+        List<String> loose = new ArrayList<>(index.ids());
+        List<PackFile> oldPacks = new ArrayList<>(getPacks());
+        TreeSet<String> kept = new TreeSet<>();
+        TreeSet<String> deleted = new TreeSet<>();
+        long bytesReclaimed = 0;
+        for (String id : loose) {
+            if (keep.test(id)) {
+                kept.add(id);
+            } else if (deleted.add(id)) {
+                bytesReclaimed += join(folder, id).length();
+            }
+        }
+        for (PackFile pack : oldPacks) {
+            for (String id : pack.ids()) {
+                if (keep.test(id)) {
+                    kept.add(id);
+                } else if (deleted.add(id)) {
+                    bytesReclaimed += pack.read(id).length;
+                }
+            }
+        }
+        if (deleted.isEmpty() && loose.isEmpty() && oldPacks.size() <= 1) {
+            return new Swept(new ArrayList<>(), 0);
+        }
+
+        // The new pack is in place before anything it replaces is deleted
+        PackFile newPack = null;
+        if (!kept.isEmpty()) {
+            packFolder.mkdir();
+            newPack = PackFile.write(packFolder, new ArrayList<>(kept), this::readRaw);
+        }
+        for (PackFile pack : oldPacks) {
+            // A pack of the same objects as before has the same name, so it was just rewritten
+            if (newPack == null || !pack.getIndexFile().equals(newPack.getIndexFile())) {
+                pack.delete();
+            }
+        }
+        for (String id : loose) {
+            join(folder, id).delete();
+        }
+        index.removeAll(loose);
+        for (String id : deleted) {
+            cache.remove(id);
+        }
+        synchronized (this) {
+            packs = null;
+        }
+        return new Swept(new ArrayList<>(deleted), bytesReclaimed);
+    }
+
+    /** The result of {@link #sweep}: the ids of the objects deleted, and the bytes they took on disk */
+    public static class Swept {
+        private final List<String> deleted;
+        private final long bytesReclaimed;
+
+        Swept(List<String> deleted, long bytesReclaimed) {
+            this.deleted = deleted;
+            this.bytesReclaimed = bytesReclaimed;
+        }
+
+        public List<String> getDeleted() {
+            return deleted;
+        }
+
+        public long getBytesReclaimed() {
+            return bytesReclaimed;
+        }
+    }
+
+    /**
+     * Writes a new pack holding the objects with the given ids copied from another store,
+     * exactly as they are stored there, so they are neither decoded nor compressed again.
+     * @param from The store to copy from, which must hold every one of the objects
+     */
+    public void receive(ObjectStore<T> from, List<String> ids) {
+        if (ids.isEmpty()) return;
+        packFolder.mkdir();
+        PackFile.write(packFolder, ids, from::readRaw);
+        synchronized (this) {
+            packs = null;
+        }
+    }
+
+    /**
+     * Rewrites every object in the store in its current format and codec, for repositories
+     * written by older versions of gitlet. Packed objects are rewritten loose, then repacked.
+     * Each object is written to a temporary file renamed over the old one, so an object is
+     * never left half rewritten.
+     * @return The number of objects rewritten
+     */
+    public int migrate() {
+        List<String> names = names();
+        boolean packed = !getPacks().isEmpty();
+        try (WriteBatch batch = WriteBatch.begin()) {
+            for (String fileName : names) {
+                T obj = read(fileName);
+                WriteBatch.write(join(folder, fileName), Codecs.encode(getCodec(), encode(obj)),
+                        () -> index.add(fileName));
+            }
+            batch.commit();
+        }
+        if (packed) {
+            repack();
+        }
+        return names.size();
+    }
+
+    /** Returns the raw stored bytes of the object under the given name, or null if it is not stored */
+    byte[] readRaw(String fileName) {
+        if (index.contains(fileName)) {
+            return readContents(join(folder, fileName));
+        }
+        byte[] packed = readPacked(fileName);
+        return packed != null ? packed : WriteBatch.pending(join(folder, fileName));
+    }
+
+    /** Lists the loose objects by scanning the folder, used to rebuild a missing index */
+    private List<String> scanLoose() {
+        List<String> fileNames = plainFilenamesIn(folder);
+        if (fileNames == null) {
+            return new ArrayList<>();
+        }
+        return fileNames.stream().filter(Utils::isUid).collect(Collectors.toList());
+    }
+
+    /** Returns the raw bytes of a packed object, or null if no pack contains it */
+    private byte[] readPacked(String fileName) {
+        PackFile pack = findPack(fileName);
+        return pack == null ? null : pack.read(fileName);
+    }
+
+    /** Returns the pack containing the given object, or null if no pack contains it */
+    private PackFile findPack(String fileName) {
+        for (PackFile pack : getPacks()) {
+            if (pack.contains(fileName)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,269 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static gitlet.Utils.*;
+
+/**
+ * An immutable pack of objects stored in a single data file, alongside a
+ * sorted index of the SHA-1 ids of the objects it contains.
+ *
+ * The data file (pack-ID.pack) is the raw bytes of each object concatenated
+ * in id order. The index file (pack-ID.idx) starts with a magic number and the
+ * number of objects, followed by one fixed width entry per object holding its
+ * raw 20-byte id, its offset in the data file and its length. Looking up an
+ * object is thus a binary search of the memory-mapped index plus one positioned read.
+ *
+ * @author Jordan Kilfoy
+ */
+public class PackFile {
+
+    /** Magic number at the start of every index file */
+    static final int IDX_MAGIC = 0x50494458; // "PIDX"
+    /** Length of the index file header: magic and object count */
+    static final int IDX_HEADER = 8;
+    /** Length of a raw SHA-1 id */
+    static final int ID_BYTES = UID_LENGTH / 2;
+    /** Length of one index entry: id, offset and length */
+    static final int IDX_ENTRY = ID_BYTES + 8 + 4;
+
+    /** The pack data file */
+    private final File packFile;
+    /** The pack index file */
+    private final File idxFile;
+    /** Read-only mapping of the index file */
+    private final ByteBuffer index;
+    /** The number of objects in this pack */
+    private final int size;
+
+    /** Opens the pack whose index is the given file */
+    public PackFile(File idxFile) {
+        this.idxFile = idxFile;
+        String name = idxFile.getName();
+        this.packFile = join(idxFile.getParentFile(), name.substring(0, name.length() - 4) + ".pack");
+        try (FileChannel channel = FileChannel.open(idxFile.toPath(), StandardOpenOption.READ)) {
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (index.getInt(0) != IDX_MAGIC) {
+            throw new IllegalArgumentException("not a pack index: " + idxFile);
+        }
+        this.size = index.getInt(4);
+    }
+
+    /** Returns the index file of this pack */
+    public File getIndexFile() {
+        return idxFile;
+    }
+
+    /** Returns the number of objects in this pack */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if the pack contains an object with the given id */
+    public boolean contains(String id) {
+        return isUid(id) && search(index, IDX_HEADER, size, IDX_ENTRY, hexToBytes(id)) >= 0;
+    }
+
+    /** Returns the raw bytes of the object with the given id, or null if it is not in this pack */
+    public byte[] read(String id) {
+        if (!isUid(id)) return null;
+        int entry = search(index, IDX_HEADER, size, IDX_ENTRY, hexToBytes(id));
+        if (entry < 0) return null;
+        int pos = entryPosition(entry) + ID_BYTES;
+        long offset = index.getLong(pos);
+        ByteBuffer data = ByteBuffer.allocate(index.getInt(pos + 8));
+        try (FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data, offset + data.position()) < 0) {
+                    throw new IllegalArgumentException("truncated pack: " + packFile);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return data.array();
+    }
+
+    /** Returns the ids of all objects in this pack, in sorted order */
+    public List<String> ids() {
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(bytesToHex(idAt(index, entryPosition(i))));
+        }
+        return ids;
+    }
+
+    /** Returns up to limit ids of objects in this pack starting with the given hex prefix, in sorted order */
+    public List<String> withPrefix(String prefix, int limit) {
+        return withPrefix(index, IDX_HEADER, size, IDX_ENTRY, prefix, limit);
+    }
+
+    /** Deletes the pack's data and index files */
+    public void delete() {
+        idxFile.delete();
+        packFile.delete();
+    }
+
+    private static int entryPosition(int entry) {
+        return IDX_HEADER + entry * IDX_ENTRY;
+    }
+
+    /**
+     * Binary searches a buffer of fixed width entries, each starting with a raw id and
+     * sorted by it, for the given id.
+     * @param buffer The buffer to search
+     * @param start The position of the first entry
+     * @param count The number of entries
+     * @param entrySize The width of each entry, or ID_BYTES for a plain list of ids
+     * @param id The raw id to search for
+     * @return The number of the entry holding the id, or -1 if none does
+     */
+    static int search(ByteBuffer buffer, int start, int count, int entrySize, byte[] id) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareId(buffer, start + mid * entrySize, id);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns up to limit ids starting with the given hex prefix from a buffer of fixed width
+     * entries sorted by id, in sorted order. Finding the first match takes a binary search,
+     * after which matching entries are adjacent.
+     */
+    static List<String> withPrefix(ByteBuffer buffer, int start, int count, int entrySize, String prefix, int limit) {
+        // The smallest id with the prefix is the prefix padded with zeros
+        StringBuilder smallest = new StringBuilder(prefix);
+        while (smallest.length() < UID_LENGTH) {
+            smallest.append('0');
+        }
+        byte[] lowest = hexToBytes(smallest.toString());
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareId(buffer, start + mid * entrySize, lowest) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<String> ids = new ArrayList<>();
+        for (int entry = lo; entry < count && ids.size() < limit; entry++) {
+            String id = bytesToHex(idAt(buffer, start + entry * entrySize));
+            if (!id.startsWith(prefix)) break;
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /** Binary searches a buffer holding a sorted list of raw ids */
+    static int search(ByteBuffer buffer, int start, int count, byte[] id) {
+        return search(buffer, start, count, ID_BYTES, id);
+    }
+
+    /** Compares the raw id at the given position of the buffer with another raw id, as unsigned bytes */
+    static int compareId(ByteBuffer buffer, int position, byte[] id) {
+        for (int i = 0; i < id.length; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(position + i), id[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the raw id of the given entry in a buffer holding a list of raw ids */
+    static byte[] idAt(ByteBuffer buffer, int start, int entry) {
+        return idAt(buffer, start + entry * ID_BYTES);
+    }
+
+    private static byte[] idAt(ByteBuffer buffer, int position) {
+        byte[] id = new byte[ID_BYTES];
+        buffer.get(position, id);
+        return id;
+    }
+
+    /**
+     * Writes a new pack into the given folder containing the objects with the given ids.
+     * The data file is written first and the index last, both through a temporary file,
+     * so a pack only becomes visible to readers once it is complete.
+     * @param folder The folder to write the pack into
+     * @param ids The ids of the objects to pack, which must all be SHA-1 ids
+     * @param contents Returns the raw bytes of the object with the given id
+     * @return The newly written pack
+     */
+    public static PackFile write(File folder, List<String> ids, Function<String, byte[]> contents) {
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        String name = "pack-" + sha1(sorted.toArray());
+        File packFile = join(folder, name + ".pack");
+        File idxFile = join(folder, name + ".idx");
+        File packTemp = join(folder, name + ".pack.tmp");
+        File idxTemp = join(folder, name + ".idx.tmp");
+
+        try {
+            long[] offsets = new long[sorted.size()];
+            int[] lengths = new int[sorted.size()];
+            // Both files are synced before being renamed into place, since gc deletes the
+            // objects they replace once they are written
+            try (FileOutputStream file = new FileOutputStream(packTemp);
+                 BufferedOutputStream out = new BufferedOutputStream(file)) {
+                long offset = 0;
+                for (int i = 0; i < sorted.size(); i++) {
+                    byte[] data = contents.apply(sorted.get(i));
+                    out.write(data);
+                    offsets[i] = offset;
+                    lengths[i] = data.length;
+                    offset += data.length;
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            try (FileOutputStream file = new FileOutputStream(idxTemp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(IDX_MAGIC);
+                out.writeInt(sorted.size());
+                for (int i = 0; i < sorted.size(); i++) {
+                    out.write(hexToBytes(sorted.get(i)));
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(packTemp.toPath(), packFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(idxTemp.toPath(), idxFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            packTemp.delete();
+            idxTemp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return new PackFile(idxFile);
+    }
+}
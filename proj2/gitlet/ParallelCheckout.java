@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static gitlet.Main.*;
+import static gitlet.Utils.*;
+
+/**
+ * Writes the files of a checkout to the working tree in parallel. Each worker reads a blob and
+ * writes its file, so reading one file's blob overlaps with writing others. Workers only
+ * start writing a file once the bytes of its contents fit in a budget shared by all of them,
+ * so memory stays bounded however many files there are; a file larger than the whole budget
+ * is written once nothing else is in flight. Chunked blobs are written a chunk at a time, so
+ * they count for one chunk.
+ *
+ * Callers check for untracked files in the way before writing anything, so a checkout that
+ * fails for that reason leaves the working tree untouched. If reading or writing a file
+ * fails, the files not yet started are skipped and the first failure is thrown.
+ *
+ * @author Jordan Kilfoy
+ */
+public class ParallelCheckout {
+
+    /** Setting for the number of files written at once */
+    public static final String WORKERS = "checkout.workers";
+    public static final int DEFAULT_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** Setting for the most bytes of file contents held in memory by the workers at once */
+    public static final String MAX_IN_FLIGHT_BYTES = "checkout.maxInFlightBytes";
+    public static final int DEFAULT_MAX_IN_FLIGHT_BYTES = 16 << 20;
+
+    /** Writes each file, named by its path relative to the CWD, with the contents of its blob,
+     * and records them in the index; uses the configured workers and budget */
+    public static void write(Map<String, String> files) {
+        write(files, Config.getInt(WORKERS, DEFAULT_WORKERS),
+                Config.getInt(MAX_IN_FLIGHT_BYTES, DEFAULT_MAX_IN_FLIGHT_BYTES));
+    }
+
+    /**
+     * Writes each file with the contents of its blob, and records them in the index.
+     * @param files Maps the path of each file relative to the CWD to the id of its blob
+     * @param workers The number of files written at once
+     * @param maxInFlightBytes The most bytes of file contents held at once
+     */
+    public static void write(Map<String, String> files, int workers, long maxInFlightBytes) {
+        if (workers <= 1 || files.size() <= 1) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                writeFile(file.getKey(), file.getValue());
+            }
+            return;
+        }
+        ByteBudget budget = new ByteBudget(Math.max(1, maxInFlightBytes));
+        WorkerThreads.forEach(new ArrayList<>(files.entrySet()), workers, "checkout",
+                file -> writeFile(file.getKey(), file.getValue(), budget));
+    }
+
+    /** Writes a file once its contents fit in the budget */
+    private static void writeFile(String filename, String blobId, ByteBudget budget) {
+        Blob blob = TRACKED_BLOBS.read(blobId);
+        long weight = blob.isChunked() ? Chunker.MAX_SIZE : blob.getSize();
+        try {
+            budget.acquire(weight);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while writing " + filename);
+        }
+        try {
+            writeBlob(filename, blobId, blob);
+        } finally {
+            budget.release(weight);
+        }
+    }
+
+    private static void writeFile(String filename, String blobId) {
+        writeBlob(filename, blobId, TRACKED_BLOBS.read(blobId));
+    }
+
+    private static void writeBlob(String filename, String blobId, Blob blob) {
+        blob.writeTo(join(CWD, filename));
+        INDEX.record(filename, blobId);
+    }
+
+    /** A number of bytes shared by the workers, each taking some while writing a file */
+    private static class ByteBudget {
+        private final long capacity;
+        private long used;
+        /** Workers waiting for bytes to be released */
+        private int waiting;
+
+        ByteBudget(long capacity) {
+            this.capacity = capacity;
+        }
+
+        /** Waits until the bytes fit in what is left, or nothing else is taken if they exceed
+         * the whole budget, then takes them */
+        synchronized void acquire(long bytes) throws InterruptedException {
+            while (used > 0 && used + bytes > capacity) {
+                waiting++;
+                try {
+                    wait();
+                } finally {
+                    waiting--;
+                }
+            }
+            used += bytes;
+        }
+
+        synchronized void release(long bytes) {
+            used -= bytes;
+            if (waiting > 0) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static gitlet.Main.*;
+import static gitlet.Utils.*;
+
+/**
+ * Another gitlet repository on disk that commits are fetched from and pushed to. Remotes are
+ * named in the config, each by a `remote.NAME.path` setting holding the path of its `.gitlet`
+ * folder.
+ *
+ * Commits are sent by negotiating which objects the receiver lacks, relying on every
+ * repository holding the whole history of each commit it holds, and every object a tree it
+ * holds leads to. Commits are walked back from the commit sent until reaching commits the
+ * receiver holds; the trees of the new commits are walked, skipping every tree the receiver
+ * holds; and each blob the receiver lacks is sent along with the delta bases and chunks it
+ * needs that the receiver lacks. The work done is proportional to what is sent, not to the
+ * size of either repository. The objects of each kind are copied as they are stored into a
+ * single new pack in the receiver, written blobs first and commits last, so the receiver
+ * never holds a commit without its files.
+ *
+ * @author Jordan Kilfoy
+ */
+public class Remote {
+
+    /** The stores of a repository: the current one's, or another's opened from its folder */
+    static class Stores {
+        final File gitletDir;
+        final ObjectStore<Commit> commits;
+        final ObjectStore<Tree> trees;
+        final ObjectStore<Blob> blobs;
+        final ObjectStore<Chunk> chunks;
+        final FolderManager<Branch> branches;
+        final CommitGraph commitGraph;
+        final MessageIndex messageIndex;
+
+        private Stores(File gitletDir, ObjectStore<Commit> commits, ObjectStore<Tree> trees,
+                       ObjectStore<Blob> blobs, ObjectStore<Chunk> chunks, FolderManager<Branch> branches,
+                       CommitGraph commitGraph, MessageIndex messageIndex) {
+            this.gitletDir = gitletDir;
+            this.commits = commits;
+            this.trees = trees;
+            this.blobs = blobs;
+            this.chunks = chunks;
+            this.branches = branches;
+            this.commitGraph = commitGraph;
+            this.messageIndex = messageIndex;
+        }
+
+        /** Returns the stores of the current repository */
+        static Stores local() {
+            return new Stores(GITLET_DIR, COMMITS, TREES, TRACKED_BLOBS, CHUNKS, BRANCHES, COMMIT_GRAPH, MESSAGE_INDEX);
+        }
+
+        /** Opens the stores of the repository in the given `.gitlet` folder */
+        static Stores open(File gitletDir) {
+            ObjectStore<Commit> commits = new ObjectStore<>(join(gitletDir, "commits"), Commit.class);
+            commits.setFormat(new CommitFormat());
+            ObjectStore<Tree> trees = new ObjectStore<>(join(gitletDir, "trees"), Tree.class);
+            trees.setFormat(new TreeFormat());
+            ObjectStore<Blob> blobs = new ObjectStore<>(join(gitletDir, "tracked_blobs"), Blob.class, false);
+            ObjectStore<Chunk> chunks = new ObjectStore<>(join(gitletDir, "chunks"), Chunk.class, false);
+            FolderManager<Branch> branches = new FolderManager<>(join(gitletDir, "branches"), Branch.class,
+                    Branch::getName);
+            branches.setFormat(new BranchFormat());
+            CommitGraph commitGraph = new CommitGraph(join(gitletDir, "commit-graph"), commits,
+                    () -> branches.names().stream().map(name -> branches.read(name).getCommitId())
+                            .collect(Collectors.toList()));
+            MessageIndex messageIndex = new MessageIndex(join(gitletDir, "commit-list"),
+                    join(gitletDir, "message-index"), commits);
+            return new Stores(gitletDir, commits, trees, blobs, chunks, branches, commitGraph, messageIndex);
+        }
+    }
+
+    /** The ids of the objects of each kind sent by a transfer */
+    static class Transfer {
+        final List<String> commits = new ArrayList<>();
+        final List<String> trees = new ArrayList<>();
+        final List<String> blobs = new ArrayList<>();
+        final List<String> chunks = new ArrayList<>();
+
+        /** Returns the total number of objects sent */
+        int size() {
+            return commits.size() + trees.size() + blobs.size() + chunks.size();
+        }
+    }
+
+    /** How long to wait for a remote's lock before giving up, since the remote may be waiting
+     * for this repository's lock in turn */
+    static final long LOCK_TIMEOUT_MILLIS = 10000;
+
+    /** Returns the config setting holding the path of the remote with the given name */
+    static String pathSetting(String name) {
+        return "remote." + name + ".path";
+    }
+
+    /**
+     * Returns the lock of the `.gitlet` folder of a remote, waiting for it only for a while.
+     * @throws GitletException If another process holds it all that time
+     */
+    static RepositoryLock lock(File gitletDir, boolean exclusive) {
+        RepositoryLock lock = RepositoryLock.acquire(gitletDir, exclusive, LOCK_TIMEOUT_MILLIS);
+        if (lock == null) {
+            throw new GitletException("The remote repository is busy; try again.");
+        }
+        return lock;
+    }
+
+    /**
+     * Returns the `.gitlet` folder of the remote with the given name. Paths are written with
+     * forward slashes on every platform, and are relative to the CWD unless absolute.
+     */
+    static File gitletDir(String name) {
+        String path = Config.get(pathSetting(name));
+        if (path == null) {
+            throw new GitletException("A remote with that name does not exist.");
+        }
+        File dir = new File(path.replace("/", File.separator));
+        if (!dir.isAbsolute()) {
+            dir = join(CWD, dir.getPath());
+        }
+        if (!dir.isDirectory()) {
+            throw new GitletException("Remote directory not found.");
+        }
+        // Its lock is already held by this command, so locking it again would fail
+        try {
+            if (dir.getCanonicalFile().equals(GITLET_DIR.getCanonicalFile())) {
+                throw new GitletException("A remote cannot be this repository.");
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return dir;
+    }
+
+    /**
+     * Copies the commit with the given id, and every commit and object in its history that
+     * the receiver lacks, from one repository to another, and adds the new commits to the
+     * receiver's commit graph and message index. Branches are not changed.
+     * @return The objects sent
+     */
+    static Transfer send(Stores from, Stores to, String headId) {
+        Transfer transfer = new Transfer();
+        Set<String> seen = new HashSet<>();
+
+        // Walk back from the head to the commits the receiver already holds
+        List<Commit> newCommits = new ArrayList<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(headId);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (id.isEmpty() || !seen.add(id) || to.commits.contains(id)) {
+                continue;
+            }
+            Commit commit = from.commits.read(id);
+            transfer.commits.add(id);
+            newCommits.add(commit);
+            pending.push(commit.getParentId());
+            pending.push(commit.getSecondParentId());
+        }
+
+        // Walk the trees and blobs of the new commits that the receiver lacks
+        for (Commit commit : newCommits) {
+            if (commit.hasTree()) {
+                addTree(commit.getTreeId(), from, to, transfer, seen);
+            } else {
+                for (String blobId : commit.getBlobs().values()) {
+                    addBlob(blobId, from, to, transfer, seen);
+                }
+            }
+        }
+
+        // Write the packs from the bottom up, so no object is there before those it names
+        to.chunks.receive(from.chunks, transfer.chunks);
+        to.blobs.receive(from.blobs, transfer.blobs);
+        to.trees.receive(from.trees, transfer.trees);
+        // Commits are listed before they are stored, so one is never stored without being listed
+        for (int i = newCommits.size() - 1; i >= 0; i--) {
+            to.messageIndex.add(newCommits.get(i));
+        }
+        to.commits.receive(from.commits, transfer.commits);
+        for (int i = newCommits.size() - 1; i >= 0; i--) {
+            to.commitGraph.add(newCommits.get(i));
+        }
+        return transfer;
+    }
+
+    /** Adds the tree and the objects under it that the receiver lacks to the transfer */
+    private static void addTree(String treeId, Stores from, Stores to, Transfer transfer, Set<String> seen) {
+        if (!seen.add(treeId) || to.trees.contains(treeId)) {
+            return;
+        }
+        Tree tree = from.trees.read(treeId);
+        transfer.trees.add(treeId);
+        for (String blobId : tree.getBlobs().values()) {
+            addBlob(blobId, from, to, transfer, seen);
+        }
+        for (String subtreeId : tree.getTrees().values()) {
+            addTree(subtreeId, from, to, transfer, seen);
+        }
+    }
+
+    /** Adds the blob, and the delta bases and chunks it needs that the receiver lacks, to the transfer */
+    private static void addBlob(String blobId, Stores from, Stores to, Transfer transfer, Set<String> seen) {
+        while (blobId != null && seen.add(blobId) && !to.blobs.contains(blobId)) {
+            Blob blob = from.blobs.read(blobId);
+            transfer.blobs.add(blobId);
+            if (blob.isChunked()) {
+                for (String chunkId : blob.getChunkIds()) {
+                    if (seen.add(chunkId) && !to.chunks.contains(chunkId)) {
+                        transfer.chunks.add(chunkId);
+                    }
+                }
+            }
+            blobId = blob.isDelta() ? blob.getDeltaBaseId() : null;
+        }
+    }
+}
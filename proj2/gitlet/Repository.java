@@ -1,12 +1,18 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static gitlet.Utils.*;
 import static gitlet.Main.*;
-import static gitlet.ModifiedStatus.*;
 
 /**
  * Represents a gitlet repository.
@@ -39,13 +45,33 @@ public class Repository {
         return head;
     }
 
+    /** Drops the loaded head branch, so it is read from disk again when next used */
+    static void forgetHead() {
+        head = null;
+    }
+
     /** Setter for the head barnch; persists head when changed */
     public static void setHead(String branchName) {
         assert BRANCHES.contains(branchName) : "Tried to set HEAD to a branch that does not exist";
-        writeContents(HEAD_FILE, branchName);
+        writeContentsAtomically(HEAD_FILE, branchName);
         head = BRANCHES.read(branchName);
     }
 
+    /**
+     * Points the head branch at the given commit, provided the branch still points where it
+     * did when it was read; otherwise another process moved it in between, and moving it
+     * again would lose that process's commits.
+     */
+    private static void moveHead(String commitId) {
+        Branch expected = new Branch(getHead().getName(), getHead().getCommitId());
+        Branch moved = new Branch(getHead().getName(), commitId);
+        if (!BRANCHES.compareAndPersist(expected, moved, moved.getName())) {
+            head = null;
+            throw new GitletException("Branch " + moved.getName() + " was changed by another process; try again.");
+        }
+        head = moved;
+    }
+
     /** Initializes a gitlet repository. */
     public static void init() {
         // Create all necessary folders
@@ -53,14 +79,18 @@ public class Repository {
         GITLET_DIR.mkdir();
         COMMITS.getFolder().mkdir();
         TRACKED_BLOBS.getFolder().mkdir();
+        CHUNKS.getFolder().mkdir();
+        TREES.getFolder().mkdir();
         BRANCHES.getFolder().mkdir();
 
         // Initialize the staging area
         StagingArea.init();
 
         // Create the initial commit
-        Commit initCommit = new Commit(INITIAL_COMMIT_MSG, new Date(0), "", new TreeMap<>());
+        Commit initCommit = new Commit(INITIAL_COMMIT_MSG, new Date(0), "", "", Tree.emptyId());
         COMMITS.persist(initCommit);
+        COMMIT_GRAPH.add(initCommit);
+        MESSAGE_INDEX.add(initCommit);
 
         // Create the master branch and set it as head
         Branch master = new Branch(MASTER_BRANCH_NAME, initCommit.digest());
@@ -78,34 +108,45 @@ public class Repository {
             throw new GitletException("Please enter a commit message.");
         }
 
-        // Copy all staged blobs to the tracked blobs directory
-        for (Blob blob : STAGED_BLOBS) {
-            TRACKED_BLOBS.persist(blob);
-        }
+        // Write the blobs, trees and commit in one batch, so they are made durable together
+        // before the branch is moved to the new commit
+        Commit newCommit;
+        try (WriteBatch batch = WriteBatch.begin()) {
+            // Copy all staged blobs to the tracked blobs directory, storing each as a delta
+            // against the parent's version of the same file when that saves space
+            Commit parentCommit = getHead().getCommit();
+            int maxDepth = Config.getInt(Config.DELTA_MAX_DEPTH, Config.DEFAULT_DELTA_MAX_DEPTH);
+            for (Blob blob : STAGED_BLOBS) {
+                String baseId = parentCommit.getBlobs().get(blob.getName());
+                if (baseId != null && maxDepth > 0) {
+                    blob = blob.deltify(TRACKED_BLOBS.read(baseId), maxDepth);
+                }
+                TRACKED_BLOBS.persist(blob);
+            }
 
-        // Prepare the new commit, containing all blobs tracked by the current head
-        // plus any additions / removals from the staging area
-        Commit parentCommit = getHead().getCommit();
-        TreeMap<String, String> blobsToTrack = parentCommit.getBlobs();
-        for (String removedFilename : StagingArea.getRemoved()) {
-            blobsToTrack.remove(removedFilename);
-        }
-        for (String addedFilename : StagingArea.getAdded().navigableKeySet()) {
-            blobsToTrack.put(addedFilename, StagingArea.getAdded().get(addedFilename));
-        }
+            // Prepare the new commit's tree from the head's, only replacing the trees of the
+            // folders holding additions / removals from the staging area
+            TreeMap<String, String> changes = new TreeMap<>();
+            for (String removedFilename : StagingArea.getRemoved()) {
+                changes.put(removedFilename, null);
+            }
+            changes.putAll(StagingArea.getAdded());
+            TREES.getFolder().mkdir();
+            String parentTreeId = parentCommit.hasTree() ? parentCommit.getTreeId()
+                    : Tree.update(Tree.emptyId(), parentCommit.getBlobs()); // commits made before trees
+            String treeId = Tree.update(parentTreeId, changes);
 
-        // Create and persist the new commit
-        Commit newCommit;
-        if (secondParentId != null) {
-            newCommit = new Commit(message, new Date(), getHead().getCommitId(), secondParentId, blobsToTrack);
-        } else {
-            newCommit = new Commit(message, new Date(), getHead().getCommitId(), blobsToTrack);
+            // Create and persist the new commit, listing it first so that an interrupted
+            // commit is never stored without being listed; unstored commits are not shown
+            newCommit = new Commit(message, new Date(), getHead().getCommitId(), secondParentId, treeId);
+            MESSAGE_INDEX.add(newCommit);
+            COMMITS.persist(newCommit);
+            batch.commit();
         }
-        COMMITS.persist(newCommit);
+        COMMIT_GRAPH.add(newCommit);
 
         // Update the commit of the HEAD branch
-        getHead().setCommitId(newCommit.digest());
-        BRANCHES.persist(getHead());
+        moveHead(newCommit.digest());
 
         // Clear the staging area
         StagingArea.clear();
@@ -113,36 +154,49 @@ public class Repository {
 
     /** Prints a log of all commits in this branch, starting from HEAD and ending at the init commit */
     public static void log() {
-        StringJoiner sj = new StringJoiner("===" + System.lineSeparator(), "===" + System.lineSeparator(), "");
-        Commit commit = getHead().getCommit();
-        while (commit != null) {
-            sj.add(commit.toString());
-            commit = COMMITS.read(commit.getParentId());
+        log(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Prints a log of the commits in this branch, starting from HEAD and following first parents.
+     * Each entry is printed as soon as its commit is read, while the commits after it are read
+     * ahead on another thread, so the first entries appear without waiting for the whole history.
+     * @param maxCount The most commits printed
+     * @param since Stops at the first commit older than this; null to print every commit
+     */
+    public static void log(int maxCount, Date since) {
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        try (CommitWalker walker = new CommitWalker(COMMITS, getHead().getCommitId(), maxCount, since)) {
+            while (walker.hasNext()) {
+                out.print("===" + System.lineSeparator() + walker.next());
+            }
+        } finally {
+            out.flush();
         }
-        System.out.print(sj);
     }
 
-    /** Prints a log of all commits in the repository */
+    /** Prints a log of all commits in the repository, from newest to oldest */
     public static void globalLog() {
-        StringJoiner sj = new StringJoiner("===" + System.lineSeparator(), "===" + System.lineSeparator(), "");
-        for (Commit commit : COMMITS) {
-            sj.add(commit.toString());
+        List<MessageIndex.Entry> entries = MESSAGE_INDEX.byTimestamp();
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        try {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                out.print("===" + System.lineSeparator() + entries.get(i));
+            }
+        } finally {
+            out.flush();
         }
-        System.out.print(sj);
     }
 
     /** Prints the commitIds of all commits with a matching commit message */
     public static void find(String message) {
-        boolean found = false;
-        for (Commit commit : COMMITS) {
-            if (commit.getMessage().equals(message)) {
-                System.out.println(commit.digest());
-                found = true;
-            }
-        }
-        if (!found) {
+        Set<String> found = MESSAGE_INDEX.find(message);
+        if (found.isEmpty()) {
             throw new GitletException("Found no commit with that message.");
         }
+        for (String commitId : found) {
+            System.out.println(commitId);
+        }
     }
 
     /** Prints the status of the repository; which branches exist, and which files are
@@ -161,7 +215,33 @@ public class Repository {
             System.out.println(filename);
         }
         System.out.println(System.lineSeparator() + "=== Modifications Not Staged For Commit ===");
+        TreeMap<String, String> tracked = getHead().getCommit().getBlobs();
+        TreeMap<String, String> added = StagingArea.getAdded();
+        TreeSet<String> removed = StagingArea.getRemoved();
+        TreeSet<String> filenames = new TreeSet<>(tracked.navigableKeySet());
+        filenames.addAll(added.navigableKeySet());
+        for (String filename : filenames) {
+            // Compare the working file with the staged version, or else the tracked version
+            String expectedId = added.containsKey(filename) ? added.get(filename) : tracked.get(filename);
+            if (!added.containsKey(filename) && removed.contains(filename)) {
+                continue;
+            }
+            String workingId = INDEX.blobId(filename);
+            if (workingId == null && !added.containsKey(filename) && !SparseCheckout.includes(filename)) {
+                continue; // left out of the working tree by the sparse checkout patterns
+            }
+            if (workingId == null) {
+                System.out.println(filename + " (deleted)");
+            } else if (!workingId.equals(expectedId)) {
+                System.out.println(filename + " (modified)");
+            }
+        }
         System.out.println(System.lineSeparator() + "=== Untracked Files ===");
+        for (String filename : workingFileNames(CWD)) {
+            if (!added.containsKey(filename) && (!tracked.containsKey(filename) || removed.contains(filename))) {
+                System.out.println(filename);
+            }
+        }
         System.out.println();
     }
 
@@ -200,7 +280,8 @@ public class Repository {
             throw new GitletException("File does not exist in that commit.");
         }
         Blob fromCommit = TRACKED_BLOBS.read(commit.getBlobs().get(fileName));
-        writeContents(join(CWD, fileName), fromCommit.getContents());
+        fromCommit.writeTo(join(CWD, fileName));
+        INDEX.record(fileName, fromCommit.digest());
     }
 
     /** Checks out a file from the current head */
@@ -208,25 +289,87 @@ public class Repository {
         checkoutFileFromCommit(fileName, getHead().getCommitId());
     }
 
-    /** Overwrites the CWD to the state of the provided commit; fails if
-     * a file untracked by the head branch is in the way */
+    /**
+     * Overwrites the CWD to the state of the provided commit; fails if a file untracked by the
+     * head branch is in the way. Only the files whose blob ids differ between the head commit
+     * and the commit are written or deleted, found by comparing their trees, along with the
+     * tracked files whose working copy differs from the head commit's. Files left out by the
+     * sparse checkout patterns are not written. Files are written in parallel.
+     */
     public static void checkoutCommit(String commitId) {
         Commit commitToCheckout = COMMITS.read(commitId);
         if (commitToCheckout == null) {
             throw new GitletException("No commit with that id exists.");
         }
+        Commit head = getHead().getCommit();
+        TreeMap<String, String> headBlobs = head.getBlobs();
+        TreeMap<String, String> changes = head.diff(commitToCheckout);
+
+        // Find the files to write, and the tracked files to delete
+        TreeMap<String, String> toWrite = new TreeMap<>();
+        List<String> toDelete = new ArrayList<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String filename = change.getKey();
+            if (change.getValue() != null && SparseCheckout.includes(filename)) {
+                toWrite.put(filename, change.getValue());
+            } else if (headBlobs.containsKey(filename)) {
+                toDelete.add(filename);
+            }
+        }
+        for (Map.Entry<String, String> tracked : headBlobs.entrySet()) {
+            String filename = tracked.getKey();
+            if (!changes.containsKey(filename) && SparseCheckout.includes(filename)
+                    && !tracked.getValue().equals(INDEX.blobId(filename))) {
+                toWrite.put(filename, tracked.getValue());
+            }
+        }
 
-        failIfChangingUntrackedFile(commitToCheckout.getBlobs().navigableKeySet());
+        // Only files the head does not track can be untracked files in the way
+        for (String filename : toWrite.keySet()) {
+            if (!headBlobs.containsKey(filename) && join(CWD, filename).isFile()) {
+                throw new GitletException("There is an untracked file in the way; delete it, or add and commit it first.");
+            }
+        }
 
-        // delete all current tracked files
-        for (String filename : getHead().getCommit().getBlobs().navigableKeySet()) {
-            restrictedDelete(join(CWD, filename));
+        for (String filename : toDelete) {
+            deleteWorkingFile(filename);
         }
+        ParallelCheckout.write(toWrite);
+    }
 
-        // check out all files from the commit
-        for (String filename : COMMITS.read(commitId).getBlobs().navigableKeySet()) {
-            checkoutFileFromCommit(filename, commitId);
+    /**
+     * Replaces the sparse checkout patterns, writing the head commit's files they newly
+     * include and deleting those they no longer include. Fails, changing nothing, if a file to
+     * be deleted is staged or differs from the head commit's version.
+     * @param patterns The new patterns; null to include every file again
+     */
+    public static void sparseCheckout(List<String> patterns) {
+        TreeMap<String, String> headBlobs = getHead().getCommit().getBlobs();
+        TreeMap<String, String> added = StagingArea.getAdded();
+        Predicate<String> willInclude = SparseCheckout.matching(patterns);
+        TreeMap<String, String> toWrite = new TreeMap<>();
+        List<String> toDelete = new ArrayList<>();
+        for (Map.Entry<String, String> tracked : headBlobs.entrySet()) {
+            String filename = tracked.getKey();
+            boolean wasIncluded = SparseCheckout.includes(filename);
+            if (willInclude.test(filename)) {
+                if (!wasIncluded && !join(CWD, filename).exists()) {
+                    toWrite.put(filename, tracked.getValue());
+                }
+            } else if (wasIncluded) {
+                String workingId = INDEX.blobId(filename);
+                if (added.containsKey(filename) || workingId != null && !workingId.equals(tracked.getValue())) {
+                    throw new GitletException("You have uncommitted changes.");
+                }
+                toDelete.add(filename);
+            }
+        }
+
+        SparseCheckout.setPatterns(patterns);
+        for (String filename : toDelete) {
+            deleteWorkingFile(filename);
         }
+        ParallelCheckout.write(toWrite);
     }
 
     /** Creates a branch with the given name */
@@ -249,11 +392,82 @@ public class Repository {
         BRANCHES.clear(branchName);
     }
 
+    /** Saves the path of another repository's `.gitlet` folder under the given remote name */
+    public static void addRemote(String remoteName, String path) {
+        if (Config.get(Remote.pathSetting(remoteName)) != null) {
+            throw new GitletException("A remote with that name already exists.");
+        }
+        Config.set(Remote.pathSetting(remoteName), path);
+    }
+
+    /** Forgets the remote with the given name */
+    public static void removeRemote(String remoteName) {
+        if (Config.get(Remote.pathSetting(remoteName)) == null) {
+            throw new GitletException("A remote with that name does not exist.");
+        }
+        Config.unset(Remote.pathSetting(remoteName));
+    }
+
+    /**
+     * Copies the commits of a branch of a remote that this repository lacks, with the objects
+     * they need, and points the branch `REMOTE/BRANCH` at the branch's head.
+     */
+    @SuppressWarnings("try")
+    public static void fetch(String remoteName, String branchName) {
+        File remoteDir = Remote.gitletDir(remoteName);
+        // The remote's lock is only held while it is read, so is never referenced
+        try (RepositoryLock lock = Remote.lock(remoteDir, false)) {
+            Remote.Stores remote = Remote.Stores.open(remoteDir);
+            Branch remoteBranch = remote.branches.read(branchName);
+            if (remoteBranch == null) {
+                throw new GitletException("That remote does not have that branch.");
+            }
+            // Moving the head branch would leave the working files behind its commit
+            String localBranchName = remoteName + "/" + branchName;
+            if (getHead().getName().equals(localBranchName)
+                    && !getHead().getCommitId().equals(remoteBranch.getCommitId())) {
+                throw new GitletException("Cannot fetch into the current branch.");
+            }
+            Remote.send(remote, Remote.Stores.local(), remoteBranch.getCommitId());
+            BRANCHES.persist(new Branch(localBranchName, remoteBranch.getCommitId()));
+        }
+    }
+
+    /**
+     * Copies the commits of the head branch that a remote lacks, with the objects they need,
+     * and points the remote's branch with the given name at the head commit. The remote
+     * branch's commit must be in the head's history, so that no commit of the remote is lost.
+     */
+    @SuppressWarnings("try")
+    public static void push(String remoteName, String branchName) {
+        File remoteDir = Remote.gitletDir(remoteName);
+        // The remote's lock is only held while it is changed, so is never referenced
+        try (RepositoryLock lock = Remote.lock(remoteDir, true)) {
+            Remote.Stores remote = Remote.Stores.open(remoteDir);
+            Branch remoteBranch = remote.branches.read(branchName);
+            String headId = getHead().getCommitId();
+            if (remoteBranch != null && !(COMMITS.contains(remoteBranch.getCommitId())
+                    && COMMIT_GRAPH.isAncestor(remoteBranch.getCommitId(), headId))) {
+                throw new GitletException("Please pull down remote changes before pushing.");
+            }
+            Remote.send(Remote.Stores.local(), remote, headId);
+            Branch moved = new Branch(branchName, headId);
+            if (!remote.branches.compareAndPersist(remoteBranch, moved, branchName)) {
+                throw new GitletException("Branch " + branchName + " was changed by another process; try again.");
+            }
+        }
+    }
+
+    /** Fetches a branch of a remote, then merges it into the head branch */
+    public static void pull(String remoteName, String branchName) {
+        fetch(remoteName, branchName);
+        merge(remoteName + "/" + branchName);
+    }
+
     /** Resets the commit of the head branch to the commit specified; and checks out that commit */
     public static void reset(String commitId) {
         checkoutCommit(commitId);
-        getHead().setCommitId(commitId);
-        BRANCHES.persist(getHead());
+        moveHead(commitId);
         StagingArea.clear();
     }
 
@@ -264,15 +478,51 @@ public class Repository {
         }
     }
 
-    /** Returns a list of names of all untracked files in CWD */
+    /** Deletes a tracked file from the CWD, along with any of its parent folders it leaves empty */
+    public static void deleteWorkingFile(String filename) {
+        File file = join(CWD, filename);
+        if (!file.isFile()) {
+            return;
+        }
+        file.delete();
+        for (File parent = file.getParentFile(); !parent.equals(CWD); parent = parent.getParentFile()) {
+            String[] children = parent.list();
+            if (children == null || children.length > 0 || !parent.delete()) {
+                break;
+            }
+        }
+    }
+
+    /** Returns a list of names of all files in CWD that are not tracked by the head commit */
     public static List<String> untrackedFileNames() {
         Commit headCommit = getHead().getCommit();
-        return Objects.requireNonNull(plainFilenamesIn(CWD))
+        return workingFileNames(CWD)
                 .stream()
                 .filter(s -> !headCommit.getBlobs().containsKey(s)) // filter our files tracked by head
                 .collect(Collectors.toList());
     }
 
+    /** Returns the names of every file under the folder, relative to the CWD, skipping .gitlet */
+    public static List<String> workingFileNames(File folder) {
+        // Normalized, since a folder such as "." would otherwise walk paths like CWD/./.gitlet
+        Path gitletDir = GITLET_DIR.toPath().toAbsolutePath().normalize();
+        try (Stream<Path> files = Files.walk(folder.toPath().toAbsolutePath().normalize())) {
+            return files.filter(path -> !path.startsWith(gitletDir))
+                    .filter(Files::isRegularFile)
+                    .map(Repository::workingFileName)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the path of the file relative to the CWD, with "/" separating its folders */
+    public static String workingFileName(Path path) {
+        Path relative = CWD.toPath().toAbsolutePath().normalize().relativize(path.toAbsolutePath().normalize());
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
     public static void merge(String givenBranchName) {
         if (!StagingArea.isEmpty()) {
             throw new GitletException("You have uncommitted changes.");
@@ -307,108 +557,207 @@ public class Repository {
         TreeMap<String, String> changes = new TreeMap<>();
         TreeSet<String> conflicts = new TreeSet<>();
 
-        // Loop through all files in both split point and given commit to find changes from split point
-        Set<String> filenames = new HashSet<>(given.getBlobs().navigableKeySet());
-        filenames.addAll(splitPoint.getBlobs().navigableKeySet());
-        for (String filename : filenames) {
-            switch (checkModifiedStatus(filename, splitPoint, given)) {
-                case ADDED, MODIFIED -> changes.put(filename, given.getBlobs().get(filename));
-                case REMOVED -> changes.put(filename, "REMOVED");
-            }
+        // Find the changes from the split point to the given commit, skipping unchanged folders
+        for (Map.Entry<String, String> change : splitPoint.diff(given).entrySet()) {
+            changes.put(change.getKey(), change.getValue() == null ? "REMOVED" : change.getValue());
         }
 
         // Compare changes with current commit's changes from split point to detect conflicts or identical modifications
-        Set<String> tempChanges = new HashSet<>(changes.navigableKeySet());
-        for (String filename : tempChanges) {
-            switch (checkModifiedStatus(filename, splitPoint, current)) {
-                case ADDED, MODIFIED -> {
-                    // if blob ids are different, this is a conflict
-                    if (!current.getBlobs().get(filename).equals(changes.get(filename))) {
-                        conflicts.add(filename);
-                    }
-                    // either way, remove from changes
-                    changes.remove(filename);
-                }
-                case REMOVED -> {
-                    // if the change is not "REMOVED", this is a conflict
-                    if (!changes.get(filename).equals("REMOVED")) {
-                        conflicts.add(filename);
-                    }
-                    changes.remove(filename);
-                }
+        TreeMap<String, String> currentChanges = splitPoint.diff(current);
+        for (String filename : new ArrayList<>(changes.navigableKeySet())) {
+            if (!currentChanges.containsKey(filename)) {
+                continue;
             }
+            String currentId = currentChanges.get(filename);
+            // if the file was changed differently on both sides, this is a conflict
+            if (!changes.get(filename).equals(currentId == null ? "REMOVED" : currentId)) {
+                conflicts.add(filename);
+            }
+            // either way, remove from changes
+            changes.remove(filename);
         }
 
         // Before merging, check to make sure no untracked working files will be overwritten
         failIfChangingUntrackedFile(changes.keySet());
         failIfChangingUntrackedFile(conflicts);
 
-        // Checkout and stage all changes
+        // Checkout and stage all changes; files to add are staged together at the end
+        List<String> filesToAdd = new ArrayList<>();
         for (String filename : changes.navigableKeySet()) {
             if (changes.get(filename).equals("REMOVED")) {
                 StagingArea.remove(filename);
             } else {
                 checkoutFileFromCommit(filename, givenBranch.getCommitId());
-                StagingArea.add(filename);
+                filesToAdd.add(filename);
             }
         }
 
-        // Create and stage merge conflict files
-        for (String filename : conflicts) {
-            String currentContents = "";
-            if (current.getBlobs().containsKey(filename)) {
-                String blobId = current.getBlobs().get(filename);
-                currentContents = new String(TRACKED_BLOBS.read(blobId).getContents());
-            }
-
-            String givenContents = "";
-            if (given.getBlobs().containsKey(filename)) {
-                String blobId = given.getBlobs().get(filename);
-                givenContents = new String(TRACKED_BLOBS.read(blobId).getContents());
-            }
-
-            writeContents(join(CWD, filename),
-                    "<<<<<<< HEAD", System.lineSeparator(),
-                    currentContents,
-                    "=======", System.lineSeparator(),
-                    givenContents,
-                    ">>>>>>>", System.lineSeparator());
+        // Merge the files changed on both sides; each is independent, so they are merged in parallel
+        boolean lineLevel = Config.getBoolean(Config.MERGE_LINE_LEVEL, Config.DEFAULT_MERGE_LINE_LEVEL);
+        TreeMap<String, String> splitBlobs = splitPoint.getBlobs();
+        TreeMap<String, String> currentBlobs = current.getBlobs();
+        TreeMap<String, String> givenBlobs = given.getBlobs();
+        Map<String, LineMerge.Result> merged = conflicts.parallelStream()
+                .collect(Collectors.toConcurrentMap(filename -> filename, filename -> mergeFile(
+                        splitBlobs.get(filename), currentBlobs.get(filename), givenBlobs.get(filename), lineLevel)));
 
-            StagingArea.add(filename);
+        // Write the merged files, which keep conflict markers around any changes that could not be merged
+        boolean conflicted = false;
+        for (String filename : conflicts) {
+            LineMerge.Result result = merged.get(filename);
+            join(CWD, filename).getParentFile().mkdirs();
+            writeContents(join(CWD, filename), (Object) result.getContents());
+            conflicted |= result.hasConflicts();
+            filesToAdd.add(filename);
+        }
+        if (!filesToAdd.isEmpty()) {
+            StagingArea.add(filesToAdd);
         }
 
         // Commit the merge commit
         commit("Merged " + givenBranchName + " into " + getHead().getName() + ".", given.digest());
-        if (!conflicts.isEmpty()) {
+        if (conflicted) {
             throw new GitletException("Encountered a merge conflict.");
         }
     }
 
-    /** Determines the latest common ancestor of two commits by:
-     * 1 - finds all common ancestors by taking the intersection of each commit's ancestors
-     * 2 - returning the commit with the latest date out of this intersection */
-    public static Commit latestCommonAncestor(Commit commit1, Commit commit2) {
-        Set<Commit> commonAncestors = commit1.getAllAncestors();
-        commonAncestors.retainAll(commit2.getAllAncestors());
-        return commonAncestors.stream().max(Comparator.comparing(Commit::getTimestamp)).get();
+    /**
+     * Merges the changes made to a file since the split point on the current and given sides.
+     * If the file was removed on either side, is binary, or line level merging is disabled,
+     * the whole file is a conflict holding both sides' contents in full.
+     * @param splitId The id of the file's blob at the split point, or null if it did not exist
+     * @param currentId The id of its blob in the current commit, or null if it was removed
+     * @param givenId The id of its blob in the given commit, or null if it was removed
+     */
+    private static LineMerge.Result mergeFile(String splitId, String currentId, String givenId, boolean lineLevel) {
+        byte[] base = splitId == null ? new byte[0] : TRACKED_BLOBS.read(splitId).getContents();
+        byte[] currentContents = currentId == null ? new byte[0] : TRACKED_BLOBS.read(currentId).getContents();
+        byte[] givenContents = givenId == null ? new byte[0] : TRACKED_BLOBS.read(givenId).getContents();
+        if (!lineLevel || currentId == null || givenId == null
+                || LineMerge.isBinary(base) || LineMerge.isBinary(currentContents) || LineMerge.isBinary(givenContents)) {
+            return new LineMerge.Result(LineMerge.conflict(currentContents, givenContents), 1);
+        }
+        return LineMerge.merge(base, currentContents, givenContents);
     }
 
     /**
-     * Returns the {@link ModifiedStatus} of the given file from one commit to another
-     * @param filename the file in question
-     * @param from the from commit
-     * @param to the to commit
-     * @return the modified status of the file from one commit to another
+     * Prints a unified diff of the changes between two commits, or between a commit and the
+     * working tree. Only the files whose blob ids differ are read: between two commits, folders
+     * holding the same tree are skipped, and working files whose stat data is unchanged are
+     * not hashed.
+     * @param fromCommitId The commit to compare from; the head commit if null
+     * @param toCommitId The commit to compare to; the working tree if null
      */
-    public static ModifiedStatus checkModifiedStatus(String filename, Commit from, Commit to) {
-        if (!from.getBlobs().containsKey(filename)) {
-            if (to.getBlobs().containsKey(filename)) return ADDED;
-            else return DNE;
+    public static void diff(String fromCommitId, String toCommitId) {
+        Commit from = COMMITS.read(fromCommitId == null ? getHead().getCommitId() : fromCommitId);
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        try {
+            if (toCommitId != null) {
+                Commit to = COMMITS.read(toCommitId);
+                TreeMap<String, String> removed = to.diff(from);
+                for (Map.Entry<String, String> change : from.diff(to).entrySet()) {
+                    String filename = change.getKey();
+                    UnifiedDiff.print(filename, blobSource(removed.get(filename)), blobSource(change.getValue()), out);
+                }
+                return;
+            }
+            TreeMap<String, String> fromBlobs = from.getBlobs();
+            TreeSet<String> filenames = new TreeSet<>(fromBlobs.keySet());
+            filenames.addAll(StagingArea.getAdded().keySet());
+            for (String filename : filenames) {
+                String fromId = fromBlobs.get(filename);
+                String workingId = INDEX.blobId(filename);
+                if (Objects.equals(fromId, workingId)
+                        || workingId == null && !SparseCheckout.includes(filename)) {
+                    continue;
+                }
+                File workingFile = join(CWD, filename);
+                UnifiedDiff.print(filename, blobSource(fromId),
+                        workingId == null ? null : () -> Files.newInputStream(workingFile.toPath()), out);
+            }
+        } finally {
+            out.flush();
         }
-        if (!to.getBlobs().containsKey(filename)) return REMOVED;
-        if (from.getBlobs().get(filename).equals(to.getBlobs().get(filename))) {
-            return SAME;
+    }
+
+    /** Returns the source of the contents of a tracked blob, or null if there is no blob */
+    private static UnifiedDiff.Source blobSource(String blobId) {
+        return blobId == null ? null : () -> TRACKED_BLOBS.read(blobId).newInputStream();
+    }
+
+    /**
+     * Deletes the objects no branch can reach and the staged blobs the staging area no longer
+     * names, then packs the rest, so the repository holds one pack per object folder instead
+     * of one file per object. Prints what was deleted and the bytes reclaimed.
+     * @param maxMillis How long marking may run; if it does not finish, its progress is saved
+     *                  and the next gc carries on from there
+     */
+    public static void gc(long maxMillis) {
+        GarbageCollector.Result result = GarbageCollector.collect(maxMillis);
+        if (result == null) {
+            System.out.println("Garbage collection paused; run gc again to carry on.");
+        } else {
+            System.out.println(result);
+        }
+    }
+
+    /** Rewrites every object, branch and the staging area of a repository created by an
+     * older version of gitlet in the current formats and codec */
+    public static void migrate() {
+        COMMITS.migrate();
+        TREES.migrate();
+        TRACKED_BLOBS.migrate();
+        STAGED_BLOBS.migrate();
+        CHUNKS.migrate();
+        for (Branch branch : BRANCHES) {
+            BRANCHES.persist(branch);
+        }
+        StagingArea.persist();
+        MESSAGE_INDEX.rebuild();
+    }
+
+    /** Prints the number of tracked blobs and chunks, and the ratio between the size of
+     * every tracked blob's contents and the space they take once chunks are deduplicated
+     * and deltified blobs are counted by the size of their deltas */
+    public static void stats() {
+        long blobCount = 0;
+        long chunkedCount = 0;
+        long deltaCount = 0;
+        long chunkReferences = 0;
+        long logicalSize = 0;
+        long storedSize = 0;
+        for (Blob blob : TRACKED_BLOBS) {
+            blobCount++;
+            logicalSize += blob.getSize();
+            storedSize += blob.getStoredSize();
+            if (blob.isChunked()) {
+                chunkedCount++;
+                chunkReferences += blob.getChunkIds().size();
+            }
+            if (blob.isDelta()) {
+                deltaCount++;
+            }
         }
-        return MODIFIED;
+        long chunkCount = 0;
+        for (Chunk chunk : CHUNKS) {
+            chunkCount++;
+            storedSize += chunk.getData().length;
+        }
+        double ratio = storedSize == 0 ? 1 : (double) logicalSize / storedSize;
+        message("Tracked blobs: %d (%d chunked, %d deltified)", blobCount, chunkedCount, deltaCount);
+        message("Chunks: %d (%d references)", chunkCount, chunkReferences);
+        message("Logical size: %d bytes", logicalSize);
+        message("Stored size: %d bytes", storedSize);
+        message("Dedup ratio: %.2f", ratio);
+        message("Commit cache: %s", COMMITS.getCacheStats());
+        message("Tree cache: %s", TREES.getCacheStats());
+        message("Blob cache: %s bytes", TRACKED_BLOBS.getCacheStats());
+    }
+
+    /** Determines the latest common ancestor of two commits from the commit graph. When
+     * criss-cross merges leave several best common ancestors, the one with the highest
+     * generation is used */
+    public static Commit latestCommonAncestor(Commit commit1, Commit commit2) {
+        return COMMITS.read(COMMIT_GRAPH.mergeBase(commit1.digest(), commit2.digest()));
     }
 }
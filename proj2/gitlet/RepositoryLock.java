@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+import static gitlet.Utils.*;
+
+/**
+ * An advisory lock on a repository, shared between processes through a {@link FileLock} on
+ * `.gitlet/lock`. Commands that only read the repository take a shared lock, so any number
+ * of them can run at once; commands that change it take an exclusive lock, so they run alone.
+ * Acquiring the lock waits until it is available, or, for the lock of another repository taken
+ * while this one's is held, only for a while: two repositories fetching from or pushing to each
+ * other take their locks in opposite orders, and would otherwise wait for each other forever.
+ *
+ * @author Jordan Kilfoy
+ */
+public class RepositoryLock implements AutoCloseable {
+
+    /** How often a lock with a time limit is tried again while another process holds it */
+    private static final long POLL_MILLIS = 50;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private RepositoryLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /** Waits for and returns the lock of the repository in the given folder */
+    public static RepositoryLock acquire(File gitletDir, boolean exclusive) {
+        FileChannel channel = open(gitletDir);
+        try {
+            return new RepositoryLock(channel, channel.lock(0, Long.MAX_VALUE, !exclusive));
+        } catch (IOException excp) {
+            closeQuietly(channel);
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the lock of the repository in the given folder, waiting at most the given
+     * number of milliseconds for it, or null if another process still holds it then */
+    public static RepositoryLock acquire(File gitletDir, boolean exclusive, long timeoutMillis) {
+        FileChannel channel = open(gitletDir);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (true) {
+                FileLock lock = channel.tryLock(0, Long.MAX_VALUE, !exclusive);
+                if (lock != null) {
+                    return new RepositoryLock(channel, lock);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    closeQuietly(channel);
+                    return null;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (IOException excp) {
+            closeQuietly(channel);
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (InterruptedException excp) {
+            closeQuietly(channel);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the lock of " + gitletDir);
+        }
+    }
+
+    private static FileChannel open(File gitletDir) {
+        try {
+            return FileChannel.open(join(gitletDir, "lock").toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the original error is more useful
+        }
+    }
+
+    /** Returns true if other processes may hold the lock at the same time */
+    public boolean isShared() {
+        return lock.isShared();
+    }
+
+    /** Releases the lock */
+    @Override
+    public void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static gitlet.Main.GITLET_DIR;
+import static gitlet.Utils.*;
+
+/**
+ * The patterns choosing which tracked files are written to the working tree, stored one per
+ * line in `.gitlet/sparse-checkout`. A pattern is a glob matched against a file's path
+ * relative to the CWD, or against any of the folders holding it, so naming a folder includes
+ * everything under it. Blank lines and lines starting with `#` are ignored. Without the file,
+ * every tracked file is written.
+ *
+ * Files left out are still tracked, and are carried from commit to commit unchanged; they are
+ * only missing from the working tree, and are not reported as deleted.
+ *
+ * @author Jordan Kilfoy
+ */
+public class SparseCheckout {
+
+    /** File containing the patterns */
+    public static final File PATTERN_FILE = join(GITLET_DIR, "sparse-checkout");
+
+    /** The patterns as written, and whether a file is included by them; lazily loaded, and
+     * null when every file is included */
+    private static List<String> patterns;
+    private static Predicate<String> included;
+    private static boolean loaded;
+
+    private static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        patterns = null;
+        if (PATTERN_FILE.exists()) {
+            patterns = new ArrayList<>();
+            for (String line : readContentsAsString(PATTERN_FILE).split("\n")) {
+                String pattern = normalize(line);
+                if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+                    patterns.add(pattern);
+                }
+            }
+        }
+        included = matching(patterns);
+        loaded = true;
+    }
+
+    /** Drops the loaded patterns, so the pattern file is read again when next used */
+    static synchronized void forget() {
+        loaded = false;
+    }
+
+    /** Strips the whitespace, and the slashes at either end, that do not change what a pattern matches */
+    private static String normalize(String pattern) {
+        String trimmed = pattern.trim();
+        int start = 0;
+        int end = trimmed.length();
+        while (start < end && trimmed.charAt(start) == '/') start++;
+        while (end > start && trimmed.charAt(end - 1) == '/') end--;
+        return trimmed.substring(start, end);
+    }
+
+    /** Returns true if only the files matching the patterns are written to the working tree */
+    public static boolean isEnabled() {
+        load();
+        return patterns != null;
+    }
+
+    /** Returns the patterns, or null if every file is included */
+    public static List<String> getPatterns() {
+        load();
+        return patterns;
+    }
+
+    /** Returns true if the tracked file with the given path belongs in the working tree */
+    public static boolean includes(String filename) {
+        load();
+        return included.test(filename);
+    }
+
+    /**
+     * Returns whether a file is included by the given patterns, or by no patterns if null.
+     * A file is included if a pattern matches its path or the path of a folder holding it.
+     */
+    public static Predicate<String> matching(List<String> patterns) {
+        if (patterns == null) {
+            return filename -> true;
+        }
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + normalize(pattern)));
+        }
+        return filename -> {
+            for (String path = filename; !path.isEmpty(); path = parent(path)) {
+                for (PathMatcher matcher : matchers) {
+                    if (matcher.matches(Paths.get(path))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        };
+    }
+
+    /** Returns the path of the folder holding the given path, or "" at the top */
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    /** Replaces the patterns with the given ones, or removes them if null so every file is included */
+    public static void setPatterns(List<String> newPatterns) {
+        if (newPatterns == null) {
+            PATTERN_FILE.delete();
+        } else {
+            StringBuilder contents = new StringBuilder();
+            for (String pattern : newPatterns) {
+                contents.append(normalize(pattern)).append('\n');
+            }
+            writeContentsAtomically(PATTERN_FILE, contents.toString());
+        }
+        forget();
+    }
+}
@@ -1,8 +1,16 @@
 package gitlet;
 
 import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import static gitlet.Utils.*;
 import static gitlet.Main.*;
 
@@ -27,22 +35,28 @@ public class StagingArea {
 
     public static TreeMap<String, String> getAdded() {
         if (added == null) {
-            added = readObject(ADDED_FILE, TreeMap.class);
+            added = BinaryFormat.decode(StagingFormat.ADDED, readContents(ADDED_FILE), TreeMap.class);
         }
         return added;
     }
 
     public static TreeSet<String> getRemoved() {
         if (removed == null) {
-            removed = readObject(REMOVED_FILE, TreeSet.class);
+            removed = BinaryFormat.decode(StagingFormat.REMOVED, readContents(REMOVED_FILE), TreeSet.class);
         }
         return removed;
     }
 
+    /** Drops the loaded staging maps, so they are read from disk again when next used */
+    static void forget() {
+        added = null;
+        removed = null;
+    }
+
     // Persists the added and removed objects
-    private static void persist() {
-        writeObject(ADDED_FILE, getAdded());
-        writeObject(REMOVED_FILE, getRemoved());
+    static void persist() {
+        writeContentsAtomically(ADDED_FILE, StagingFormat.ADDED.encode(getAdded()));
+        writeContentsAtomically(REMOVED_FILE, StagingFormat.REMOVED.encode(getRemoved()));
     }
 
     private static void resetAddedAndRemoved() {
@@ -61,34 +75,94 @@ public class StagingArea {
 
     /** Adds a file from the CWD to the staging area */
     public static void add(String filename) throws GitletException {
-        File file = join(CWD, filename);
-        if (!file.exists()) {
-            throw new GitletException("File does not exist.");
-        }
+        add(List.of(filename));
+    }
 
-        // Clear the already staged version of the file if it exists
-        if (getAdded().containsKey(filename)) {
-            STAGED_BLOBS.clear(getAdded().get(filename));
-            getAdded().remove(filename);
+    /**
+     * Adds files from the CWD to the staging area. Each path is a file, a folder whose files
+     * are all added, or a glob matched against the paths of every file under the CWD.
+     * Files are hashed and their blobs written in parallel, and the staging area is
+     * persisted once all of them are staged.
+     */
+    public static void add(List<String> paths) throws GitletException {
+        Set<String> filenames = expand(paths);
+        Commit headCommit = Repository.getHead().getCommit();
+
+        // Hash every file, persisting the blobs that differ from the currently tracked version
+        // in one batch, made durable before the staging area names them
+        Map<String, String> blobIds;
+        try (WriteBatch batch = WriteBatch.begin()) {
+            blobIds = filenames.parallelStream()
+                    .collect(Collectors.toConcurrentMap(filename -> filename, filename -> {
+                        Blob blobToStage = Blob.fromFile(join(CWD, filename), filename);
+                        INDEX.record(filename, blobToStage.digest());
+                        if (!blobToStage.digest().equals(headCommit.getBlobs().get(filename))) {
+                            STAGED_BLOBS.persist(blobToStage);
+                        }
+                        return blobToStage.digest();
+                    }));
+            batch.commit();
         }
 
-        // Stage it if the file is different from the currently tracked version
-        Blob blobToStage = new Blob(readContents(file), filename);
-        Commit headCommit = Repository.getHead().getCommit();
-        if (!headCommit.getBlobs().containsKey(filename)
-         || !headCommit.getBlobs().get(filename).equals(blobToStage.digest())) {
-            // Persist the blob in the staging area
-            STAGED_BLOBS.persist(blobToStage);
-            getAdded().put(filename, blobToStage.digest());
+        Set<String> replaced = new HashSet<>();
+        for (String filename : filenames) {
+            // Replace the already staged version of the file if it exists
+            String stagedId = getAdded().remove(filename);
+            if (stagedId != null) {
+                replaced.add(stagedId);
+            }
+            // Stage it if the file is different from the currently tracked version
+            String blobId = blobIds.get(filename);
+            if (!blobId.equals(headCommit.getBlobs().get(filename))) {
+                getAdded().put(filename, blobId);
+            }
+            // If the file was staged for removal, un-stage it for removal
+            getRemoved().remove(filename);
         }
 
-        // If the file was staged for removal, un-stage it for removal
-        getRemoved().remove(filename);
+        // Clear replaced blobs, unless another staged file still has the same contents
+        replaced.removeAll(getAdded().values());
+        for (String blobId : replaced) {
+            STAGED_BLOBS.clear(blobId);
+        }
 
         // Persist the added and removed objects
         persist();
     }
 
+    /** Returns the names of the files under the CWD matched by the given paths, relative to the CWD */
+    private static Set<String> expand(List<String> paths) {
+        TreeSet<String> filenames = new TreeSet<>();
+        List<String> workingFiles = null;
+        for (String path : paths) {
+            File file = join(CWD, path);
+            if (file.isFile()) {
+                filenames.add(Repository.workingFileName(file.toPath()));
+            } else if (file.isDirectory()) {
+                filenames.addAll(Repository.workingFileNames(file));
+            } else if (isGlob(path)) {
+                if (workingFiles == null) {
+                    workingFiles = Repository.workingFileNames(CWD);
+                }
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path);
+                List<String> matches = workingFiles.stream()
+                        .filter(filename -> matcher.matches(Paths.get(filename)))
+                        .collect(Collectors.toList());
+                if (matches.isEmpty()) {
+                    throw new GitletException("File does not exist.");
+                }
+                filenames.addAll(matches);
+            } else {
+                throw new GitletException("File does not exist.");
+            }
+        }
+        return filenames;
+    }
+
+    private static boolean isGlob(String path) {
+        return path.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0);
+    }
+
     /** Removes a file from the staging area, and from the CWD provided
      * it is tracked by the HEAD commit */
     public static void remove(String filename) throws GitletException {
@@ -107,7 +181,7 @@ public class StagingArea {
 
         // Stage the file for removal and remove it from CWD if it's tracked by the head commit
         if (Repository.getHead().getCommit().getBlobs().containsKey(filename)) {
-            restrictedDelete(join(CWD, filename));
+            Repository.deleteWorkingFile(filename);
             getRemoved().add(filename);
         }
 
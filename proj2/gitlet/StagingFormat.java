@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.BinaryFormat.*;
+
+/**
+ * Binary formats of the staging area's maps: the files staged for addition with their blob ids,
+ * and the names of the files staged for removal. Both start with their number of entries.
+ *
+ * @author Jordan Kilfoy
+ */
+public class StagingFormat {
+
+    /** Format of the map of files staged for addition to their blob ids */
+    public static final BinaryFormat<TreeMap<String, String>> ADDED = new BinaryFormat<>() {
+        @Override
+        public byte kind() {
+            return 'a';
+        }
+
+        @Override
+        public byte version() {
+            return 1;
+        }
+
+        @Override
+        public void write(TreeMap<String, String> added, DataOutputStream out) throws IOException {
+            out.writeInt(added.size());
+            for (Map.Entry<String, String> entry : added.entrySet()) {
+                writeString(entry.getKey(), out);
+                writeId(entry.getValue(), out);
+            }
+        }
+
+        @Override
+        public TreeMap<String, String> read(int version, DataInputStream in) throws IOException {
+            TreeMap<String, String> added = new TreeMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String filename = readString(in);
+                added.put(filename, readId(in));
+            }
+            return added;
+        }
+    };
+
+    /** Format of the set of files staged for removal */
+    public static final BinaryFormat<TreeSet<String>> REMOVED = new BinaryFormat<>() {
+        @Override
+        public byte kind() {
+            return 'r';
+        }
+
+        @Override
+        public byte version() {
+            return 1;
+        }
+
+        @Override
+        public void write(TreeSet<String> removed, DataOutputStream out) throws IOException {
+            out.writeInt(removed.size());
+            for (String filename : removed) {
+                writeString(filename, out);
+            }
+        }
+
+        @Override
+        public TreeSet<String> read(int version, DataInputStream in) throws IOException {
+            TreeSet<String> removed = new TreeSet<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                removed.add(readString(in));
+            }
+            return removed;
+        }
+    };
+}
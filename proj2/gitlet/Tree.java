@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static gitlet.Main.TREES;
+
+/**
+ *  Represents a gitlet tree object, or one folder of the files tracked by a commit.
+ *  A tree maps the name of each file directly in the folder to the id of the blob holding it,
+ *  and the name of each subfolder to the id of its own tree. Since trees are stored under their
+ *  digest, a folder that did not change between two commits is the same tree object in both:
+ *  making a commit only writes new trees for the folders on the paths of its changed files,
+ *  and comparing two commits can skip every subfolder whose tree id is the same on both sides.
+ *  A Tree is Digestable, and its digest is the SHA-1 hash of its binary encoding.
+ *  A Tree is immutable; none of its fields can change after being created. This is to
+ *  preserve the Digestable contract.
+ *
+ *  @author Jordan Kilfoy
+ */
+public class Tree implements Digestable, Serializable {
+
+    /** Pinned, so trees written by Java serialization stay readable after recompiling */
+    private static final long serialVersionUID = 6459704039429567320L;
+
+    /** Format trees are encoded in, and digested from */
+    private static final TreeFormat FORMAT = new TreeFormat();
+
+    /** Maps the name of each file in this folder to the id of its blob */
+    private final TreeMap<String, String> blobs;
+
+    /** Maps the name of each subfolder of this folder to the id of its tree */
+    private final TreeMap<String, String> trees;
+
+    public Tree(TreeMap<String, String> blobs, TreeMap<String, String> trees) {
+        this.blobs = blobs;
+        this.trees = trees;
+    }
+
+    /** Returns the tree holding no files */
+    public static Tree empty() {
+        return new Tree(new TreeMap<>(), new TreeMap<>());
+    }
+
+    /**
+     * Returns the id of the tree made by applying the changes to the given tree, persisting
+     * only the trees of the folders containing a change. Every other folder keeps its tree.
+     * @param treeId The tree to change
+     * @param changes Maps the path of each changed file to its new blob id, or to null if
+     *                the file is removed. Folders left empty are removed
+     * @return The id of the changed tree
+     */
+    public static String update(String treeId, SortedMap<String, String> changes) {
+        Tree tree = TREES.read(treeId);
+        TreeMap<String, String> blobs = new TreeMap<>(tree.blobs);
+        TreeMap<String, String> trees = new TreeMap<>(tree.trees);
+
+        // Apply the changes to files in this folder, and group the others by subfolder
+        TreeMap<String, TreeMap<String, String>> subfolderChanges = new TreeMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (change.getValue() == null) {
+                    blobs.remove(path);
+                } else {
+                    blobs.put(path, change.getValue());
+                }
+            } else {
+                subfolderChanges.computeIfAbsent(path.substring(0, slash), name -> new TreeMap<>())
+                        .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> subfolder : subfolderChanges.entrySet()) {
+            String subtreeId = trees.getOrDefault(subfolder.getKey(), emptyId());
+            String newSubtreeId = update(subtreeId, subfolder.getValue());
+            if (newSubtreeId.equals(emptyId())) {
+                trees.remove(subfolder.getKey());
+            } else {
+                trees.put(subfolder.getKey(), newSubtreeId);
+            }
+        }
+
+        Tree newTree = new Tree(blobs, trees);
+        TREES.persist(newTree);
+        return newTree.digest();
+    }
+
+    /** Returns the id of the empty tree, persisting it if needed */
+    public static String emptyId() {
+        Tree empty = empty();
+        TREES.persist(empty);
+        return empty.digest();
+    }
+
+    /** Returns a map of the path of every file under the given tree to its blob id */
+    public static TreeMap<String, String> flatten(String treeId) {
+        TreeMap<String, String> files = new TreeMap<>();
+        flatten(treeId, "", files);
+        return files;
+    }
+
+    private static void flatten(String treeId, String prefix, TreeMap<String, String> files) {
+        Tree tree = TREES.read(treeId);
+        for (Map.Entry<String, String> blob : tree.blobs.entrySet()) {
+            files.put(prefix + blob.getKey(), blob.getValue());
+        }
+        for (Map.Entry<String, String> subtree : tree.trees.entrySet()) {
+            flatten(subtree.getValue(), prefix + subtree.getKey() + "/", files);
+        }
+    }
+
+    /**
+     * Returns the files that differ between two trees, without reading any subfolder whose
+     * tree is the same in both.
+     * @return Maps the path of each file added or modified in the second tree to its blob id
+     *         there, and of each file removed from it to null
+     */
+    public static TreeMap<String, String> diff(String fromTreeId, String toTreeId) {
+        TreeMap<String, String> changes = new TreeMap<>();
+        diff(fromTreeId, toTreeId, "", changes);
+        return changes;
+    }
+
+    private static void diff(String fromTreeId, String toTreeId, String prefix, TreeMap<String, String> changes) {
+        if (fromTreeId != null && fromTreeId.equals(toTreeId)) {
+            return;
+        }
+        Tree from = fromTreeId == null ? empty() : TREES.read(fromTreeId);
+        Tree to = toTreeId == null ? empty() : TREES.read(toTreeId);
+        for (Map.Entry<String, String> blob : from.blobs.entrySet()) {
+            if (!to.blobs.containsKey(blob.getKey())) {
+                changes.put(prefix + blob.getKey(), null);
+            }
+        }
+        for (Map.Entry<String, String> blob : to.blobs.entrySet()) {
+            if (!blob.getValue().equals(from.blobs.get(blob.getKey()))) {
+                changes.put(prefix + blob.getKey(), blob.getValue());
+            }
+        }
+        TreeMap<String, String> subfolders = new TreeMap<>(from.trees);
+        subfolders.putAll(to.trees);
+        for (String name : subfolders.keySet()) {
+            diff(from.trees.get(name), to.trees.get(name), prefix + name + "/", changes);
+        }
+    }
+
+    // Getters
+
+    public TreeMap<String, String> getBlobs() {
+        return blobs;
+    }
+
+    public TreeMap<String, String> getTrees() {
+        return trees;
+    }
+
+    @Override
+    public String digest() {
+        return Utils.sha1(FORMAT.encode(this));
+    }
+}
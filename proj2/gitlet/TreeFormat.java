@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.BinaryFormat.*;
+
+/**
+ * Binary format of a Tree: the number of files followed by each file's name and blob id,
+ * then the number of subfolders followed by each subfolder's name and tree id.
+ *
+ * @author Jordan Kilfoy
+ */
+public class TreeFormat implements BinaryFormat<Tree> {
+
+    @Override
+    public byte kind() {
+        return 't';
+    }
+
+    @Override
+    public byte version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Tree tree, DataOutputStream out) throws IOException {
+        writeEntries(tree.getBlobs(), out);
+        writeEntries(tree.getTrees(), out);
+    }
+
+    @Override
+    public Tree read(int version, DataInputStream in) throws IOException {
+        TreeMap<String, String> blobs = readEntries(in);
+        return new Tree(blobs, readEntries(in));
+    }
+
+    private static void writeEntries(TreeMap<String, String> entries, DataOutputStream out) throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeId(entry.getValue(), out);
+        }
+    }
+
+    private static TreeMap<String, String> readEntries(DataInputStream in) throws IOException {
+        TreeMap<String, String> entries = new TreeMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = readString(in);
+            entries.put(name, readId(in));
+        }
+        return entries;
+    }
+}
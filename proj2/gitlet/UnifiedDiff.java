@@ -0,0 +1,315 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints the differences between two versions of a file as a unified diff, without holding
+ * either version's contents in memory.
+ *
+ * Each version is read twice. The first pass hashes every line to 64 bits and numbers each
+ * distinct hash, so that {@link MyersDiff} can match lines by number; memory use is a few
+ * words per line, however long the lines are. The second pass reads both versions again from the
+ * start, printing each hunk's lines as it reaches them. Hunks show up to three unchanged
+ * lines of context on each side, and hunks whose context would overlap are joined.
+ *
+ * @author Jordan Kilfoy
+ */
+public class UnifiedDiff {
+
+    /** Unchanged lines shown before and after each change */
+    static final int CONTEXT = 3;
+    /** A version with a NUL byte this close to its start is binary, and is not diffed line by line */
+    static final int BINARY_PROBE = 8000;
+
+    /** Bytes read from a version at a time */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Opens a new stream of one version of a file */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Prints the differences between two versions of a file.
+     * @param name The name of the file
+     * @param from The old version, or null if the file did not exist
+     * @param to The new version, or null if the file does not exist
+     */
+    public static void print(String name, Source from, Source to, PrintStream out) {
+        try {
+            LineNumbers numbers = new LineNumbers();
+            Hashed a = hash(from, numbers);
+            Hashed b = hash(to, numbers);
+            out.println("diff --git a/" + name + " b/" + name);
+            if (a.binary || b.binary) {
+                out.println("Binary files " + label("a/", name, from) + " and " + label("b/", name, to) + " differ");
+                return;
+            }
+            out.println("--- " + label("a/", name, from));
+            out.println("+++ " + label("b/", name, to));
+            int[] matches = MyersDiff.matches(a.lines, b.lines);
+            printHunks(hunks(matches, a.lines.length, b.lines.length), a.lines.length, from, to, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The number of each line of a version, and whether it is binary */
+    private static class Hashed {
+        final int[] lines;
+        final boolean binary;
+
+        Hashed(int[] lines, boolean binary) {
+            this.lines = lines;
+            this.binary = binary;
+        }
+    }
+
+    /** Reads a version, numbering each line by its hash */
+    private static Hashed hash(Source source, LineNumbers numbers) throws IOException {
+        if (source == null) {
+            return new Hashed(new int[0], false);
+        }
+        int[] lines = new int[64];
+        int count = 0;
+        boolean binary = false;
+        try (InputStream in = source.open()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long hash = FNV_OFFSET;
+            boolean inLine = false;
+            long position = 0;
+            for (int length = in.read(buffer); length >= 0; length = in.read(buffer)) {
+                for (int i = 0; i < length; i++) {
+                    byte b = buffer[i];
+                    hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                    inLine = true;
+                    if (b == 0 && position + i < BINARY_PROBE) {
+                        binary = true;
+                    }
+                    if (b == '\n') {
+                        if (count == lines.length) {
+                            lines = Arrays.copyOf(lines, count * 2);
+                        }
+                        lines[count++] = numbers.number(hash);
+                        hash = FNV_OFFSET;
+                        inLine = false;
+                    }
+                }
+                position += length;
+            }
+            if (inLine) {
+                if (count == lines.length) {
+                    lines = Arrays.copyOf(lines, count + 1);
+                }
+                lines[count++] = numbers.number(hash);
+            }
+        }
+        return new Hashed(Arrays.copyOf(lines, count), binary);
+    }
+
+    /**
+     * Numbers each distinct line hash in the order first seen. Hashes are kept in an open
+     * addressing table of primitives, which takes a small fraction of the memory of a map of
+     * boxed hashes when a file has millions of distinct lines.
+     */
+    private static class LineNumbers {
+        private long[] hashes = new long[1 << 10];
+        private int[] numbers = new int[1 << 10];
+        private int size;
+
+        /** Returns the number of the line with the given hash, numbering it if it is new */
+        int number(long hash) {
+            int mask = hashes.length - 1;
+            int slot = (int) (hash ^ hash >>> 32) & mask;
+            // Numbers are stored plus one, so that an empty slot holds 0
+            while (numbers[slot] != 0) {
+                if (hashes[slot] == hash) {
+                    return numbers[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            numbers[slot] = ++size;
+            if (size * 2 > hashes.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        /** Doubles the table, keeping it at most half full */
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[] oldNumbers = numbers;
+            hashes = new long[oldHashes.length * 2];
+            numbers = new int[oldNumbers.length * 2];
+            int mask = hashes.length - 1;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldNumbers[i] == 0) continue;
+                int slot = (int) (oldHashes[i] ^ oldHashes[i] >>> 32) & mask;
+                while (numbers[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                numbers[slot] = oldNumbers[i];
+            }
+        }
+    }
+
+    /** Returns the label of a version in the diff header */
+    private static String label(String prefix, String name, Source source) {
+        return source == null ? "/dev/null" : prefix + name;
+    }
+
+    /**
+     * Returns the changed blocks, each as the range of lines {aStart, aEnd, bStart, bEnd} it
+     * replaces in the old version and holds in the new one, grouped into hunks.
+     */
+    private static List<List<int[]>> hunks(int[] matches, int n, int m) {
+        List<List<int[]>> hunks = new ArrayList<>();
+        List<int[]> hunk = null;
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && matches[i] == j) {
+                i++;
+                j++;
+                continue;
+            }
+            int[] block = new int[4];
+            block[0] = i;
+            block[2] = j;
+            while (i < n && matches[i] == MyersDiff.UNMATCHED) {
+                i++;
+            }
+            j = i < n ? matches[i] : m;
+            block[1] = i;
+            block[3] = j;
+            if (hunk == null || block[0] - hunk.get(hunk.size() - 1)[1] > 2 * CONTEXT) {
+                hunk = new ArrayList<>();
+                hunks.add(hunk);
+            }
+            hunk.add(block);
+        }
+        return hunks;
+    }
+
+    /** Reads both versions again, printing the lines of each hunk; the old version has n lines */
+    private static void printHunks(List<List<int[]>> hunks, int n, Source from, Source to, PrintStream out)
+            throws IOException {
+        if (hunks.isEmpty()) return;
+        try (LineReader a = new LineReader(from); LineReader b = new LineReader(to)) {
+            for (List<int[]> hunk : hunks) {
+                int[] first = hunk.get(0);
+                int[] last = hunk.get(hunk.size() - 1);
+                int aFrom = Math.max(0, first[0] - CONTEXT);
+                int bFrom = first[2] - (first[0] - aFrom);
+                int aTo = Math.min(n, last[1] + CONTEXT);
+                int bTo = last[3] + (aTo - last[1]);
+                out.println("@@ -" + range(aFrom, aTo - aFrom) + " +" + range(bFrom, bTo - bFrom) + " @@");
+                a.skipTo(aFrom);
+                b.skipTo(bFrom);
+                int line = aFrom;
+                for (int[] block : hunk) {
+                    for (; line < block[0]; line++) {
+                        printLine(' ', a.next(), out);
+                        b.next();
+                    }
+                    for (; line < block[1]; line++) {
+                        printLine('-', a.next(), out);
+                    }
+                    for (int k = block[2]; k < block[3]; k++) {
+                        printLine('+', b.next(), out);
+                    }
+                }
+                for (; line < aTo; line++) {
+                    printLine(' ', a.next(), out);
+                    b.next();
+                }
+            }
+        }
+    }
+
+    /** Returns a range of lines as shown in a hunk header: 1-based, or the line before an empty range */
+    private static String range(int start, int length) {
+        return (length == 0 ? start : start + 1) + "," + length;
+    }
+
+    /** Prints a line of a hunk, noting when the last line of a version has no line terminator */
+    private static void printLine(char prefix, byte[] line, PrintStream out) {
+        out.print(prefix);
+        out.write(line, 0, line.length);
+        if (line.length == 0 || line[line.length - 1] != '\n') {
+            out.println();
+            out.println("\\ No newline at end of file");
+        }
+    }
+
+    /** Reads the lines of a version one at a time, as raw bytes including their terminators */
+    private static class LineReader implements AutoCloseable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        /** The position of the next unread byte in the buffer, and the end of the bytes in it */
+        private int position;
+        private int limit;
+        /** The number of lines read so far */
+        private int read;
+
+        LineReader(Source source) throws IOException {
+            this.in = source == null ? InputStream.nullInputStream() : source.open();
+        }
+
+        /** Skips lines until the next line read is the given one */
+        void skipTo(int line) throws IOException {
+            while (read < line && fill()) {
+                for (; position < limit && read < line; position++) {
+                    if (buffer[position] == '\n') {
+                        read++;
+                    }
+                }
+            }
+        }
+
+        /** Returns the next line */
+        byte[] next() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            while (fill()) {
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                if (position < limit) {
+                    position++;
+                    line.write(buffer, start, position - start);
+                    break;
+                }
+                line.write(buffer, start, position - start);
+            }
+            read++;
+            return line.toByteArray();
+        }
+
+        /** Reads more of the version if the buffer is used up, returning false at the end */
+        private boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            limit = Math.max(in.read(buffer), 0);
+            position = 0;
+            return limit > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
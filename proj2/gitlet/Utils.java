@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -57,12 +58,54 @@ public class Utils {
         }
     }
 
+    /** Returns a new SHA-1 MessageDigest, for hashing values incrementally. */
+    public static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     public static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Returns true iff ID is a complete SHA-1 UID as a hexadecimal numeral. */
+    public static boolean isUid(String id) {
+        if (id == null || id.length() != UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UID_LENGTH; i++) {
+            if (Character.digit(id.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the raw bytes of the hexadecimal numeral HEX, which must
+     *  have an even number of digits. */
+    public static byte[] hexToBytes(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /** Returns the lowercase hexadecimal numeral of the raw BYTES. */
+    public static String bytesToHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -136,6 +179,37 @@ public class Utils {
         }
     }
 
+    /** Write the result of concatenating the bytes in CONTENTS to FILE,
+     *  like writeContents, but by writing a temporary file in the same
+     *  folder and renaming it over FILE, so that other processes see either
+     *  the old or the new contents of FILE and never a partly written file.
+     *  Temporary files end in TEMP_SUFFIX. The file is written through
+     *  WriteBatch, so it is forced to disk as the repository's durability
+     *  setting says, and put in place when the open batch commits, if any.
+     *  Throws IllegalArgumentException in case of problems. */
+    public static void writeContentsAtomically(File file, Object... contents) {
+        if (contents.length == 1 && contents[0] instanceof byte[]) {
+            WriteBatch.write(file, (byte[]) contents[0]);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            for (Object obj : contents) {
+                if (obj instanceof byte[]) {
+                    bytes.write((byte[]) obj);
+                } else {
+                    bytes.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException | ClassCastException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        WriteBatch.write(file, bytes.toByteArray());
+    }
+
+    /** Suffix of the temporary files written by writeContentsAtomically. */
+    public static final String TEMP_SUFFIX = ".tmp";
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     public static <T extends Serializable> T readObject(File file,
@@ -220,6 +294,22 @@ public class Utils {
         }
     }
 
+    /** Return an object of type T deserialized from BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of problems. */
+    public static <T extends Serializable> T deserialize(byte[] bytes,
+                                                   Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * An ObjectCache that holds the most recently used objects up to a maximum total weight,
+ * where each object weighs what its weigher says: its size in bytes for blobs, or 1 to bound
+ * the number of objects held.
+ *
+ * Once the weight is over the maximum, the least recently used objects are evicted until it
+ * fits again. An evicted object is still reachable through a soft reference, so it is only
+ * lost once the JVM runs short of memory, and a lookup finding it there caches it again.
+ * An object weighing more than the maximum is only ever held softly.
+ * @param <T> The type of object cached
+ *
+ * @author Jordan Kilfoy
+ */
+public class WeightedCache<T> implements ObjectCache<T> {
+
+    /** A soft reference to an evicted object, which remembers its name */
+    private static class NamedReference<T> extends SoftReference<T> {
+        final String name;
+
+        NamedReference(String name, T obj, ReferenceQueue<T> queue) {
+            super(obj, queue);
+            this.name = name;
+        }
+    }
+
+    /** The largest total weight held strongly */
+    private final long maxWeight;
+    /** Returns the weight of an object */
+    private final ToLongFunction<? super T> weigher;
+
+    /** Objects held strongly, from least to most recently used; guarded by this */
+    private final LinkedHashMap<String, T> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Total weight of the entries; guarded by this */
+    private long weight;
+    /** Objects evicted from the entries, until the garbage collector clears them */
+    private final Map<String, NamedReference<T>> evicted = new ConcurrentHashMap<>();
+    /** Receives the references cleared by the garbage collector */
+    private final ReferenceQueue<T> cleared = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder softHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public WeightedCache(long maxWeight, ToLongFunction<? super T> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /** Returns a cache holding at most the given number of objects */
+    public static <T> WeightedCache<T> ofCount(long maxObjects) {
+        return new WeightedCache<>(maxObjects, obj -> 1);
+    }
+
+    @Override
+    public T get(String name) {
+        synchronized (this) {
+            T obj = entries.get(name);
+            if (obj != null) {
+                hits.increment();
+                return obj;
+            }
+        }
+        NamedReference<T> reference = evicted.get(name);
+        T obj = reference == null ? null : reference.get();
+        if (obj == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        softHits.increment();
+        put(name, obj);
+        return obj;
+    }
+
+    @Override
+    public void put(String name, T obj) {
+        expungeCleared();
+        evicted.remove(name);
+        long objWeight = weigher.applyAsLong(obj);
+        if (objWeight > maxWeight) {
+            remove(name);
+            evict(name, obj);
+            return;
+        }
+        synchronized (this) {
+            T previous = entries.put(name, obj);
+            if (previous != null) {
+                weight -= weigher.applyAsLong(previous);
+            }
+            weight += objWeight;
+            Iterator<Map.Entry<String, T>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                Map.Entry<String, T> entry = eldest.next();
+                weight -= weigher.applyAsLong(entry.getValue());
+                eldest.remove();
+                evict(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void remove(String name) {
+        synchronized (this) {
+            T previous = entries.remove(name);
+            if (previous != null) {
+                weight -= weigher.applyAsLong(previous);
+            }
+        }
+        evicted.remove(name);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+            weight = 0;
+        }
+        evicted.clear();
+    }
+
+    @Override
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), softHits.sum(), misses.sum(), evictions.sum(), entries.size(), weight);
+    }
+
+    /** Keeps the object reachable only through a soft reference */
+    private void evict(String name, T obj) {
+        evictions.increment();
+        evicted.put(name, new NamedReference<>(name, obj, cleared));
+    }
+
+    /** Forgets the names of evicted objects the garbage collector has cleared */
+    @SuppressWarnings("unchecked")
+    private void expungeCleared() {
+        for (Reference<? extends T> reference = cleared.poll(); reference != null; reference = cleared.poll()) {
+            NamedReference<T> named = (NamedReference<T>) reference;
+            evicted.remove(named.name, named);
+        }
+    }
+}
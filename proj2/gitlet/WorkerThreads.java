@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs an action on every item of a list on a number of threads. Each thread takes the next
+ * item from a shared counter, rather than one task being queued per item, so handing out items
+ * costs no more than an increment. After the first failure no further items are started, and
+ * the failure is thrown once the threads stop.
+ *
+ * @author Jordan Kilfoy
+ */
+public class WorkerThreads {
+
+    /**
+     * Runs the action on every item, on the calling thread if there is only one worker or item.
+     * @param items The items to run the action on
+     * @param workers The number of threads
+     * @param name The name of the threads, each followed by its number
+     * @param action The action, which must be safe to run on several items at once
+     */
+    public static <E> void forEach(List<E> items, int workers, String name, Consumer<E> action) {
+        if (workers <= 1 || items.size() <= 1) {
+            for (E item : items) {
+                action.accept(item);
+            }
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[Math.min(workers, items.size())];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = next.getAndIncrement(); j < items.size() && failure.get() == null;
+                         j = next.getAndIncrement()) {
+                        action.accept(items.get(j));
+                    }
+                } catch (Throwable excp) {
+                    failure.compareAndSet(null, excp);
+                }
+            }, name + "-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException excp) {
+                failure.compareAndSet(null, excp);
+                for (Thread other : threads) {
+                    other.interrupt();
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for " + name);
+            }
+        }
+        Throwable failed = failure.get();
+        if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        }
+        if (failed instanceof Error) {
+            throw (Error) failed;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/**
+ * Groups the files written by a command so that they are made durable together. Every file is
+ * written to a temporary file in its folder through a channel of its own, then renamed over the
+ * file, so other processes never see a partly written file. How much is forced to disk depends
+ * on the `core.durability` setting:
+ * <ul>
+ * <li>{@code none}: nothing is forced; a crash may lose or empty recently written files.</li>
+ * <li>{@code batch} (the default): the files written in a batch are forced together when it
+ *     commits, then renamed, then each folder written to is synced once. Until then they are
+ *     only visible through {@link #pending}, so a crash never leaves an object in place
+ *     without its contents. A file written outside a batch is a batch of its own.</li>
+ * <li>{@code strict}: every file is forced, renamed and its folder synced before the next
+ *     is written.</li>
+ * </ul>
+ * Callers that need some files durable before others are written, such as objects before
+ * the branch pointing at them, commit a batch before writing the others.
+ *
+ * @author Jordan Kilfoy
+ */
+public class WriteBatch implements AutoCloseable {
+
+    /** Setting choosing how much is forced to disk; see {@link Durability} */
+    public static final String DURABILITY = "core.durability";
+
+    /** Channels of a batch left open to be forced when it commits; beyond this many,
+     * the oldest are forced early and closed, so large batches do not run out of files */
+    static final int MAX_OPEN_CHANNELS = 256;
+
+    /** How much of what is written is forced to disk, and when */
+    public enum Durability {
+        NONE, BATCH, STRICT;
+
+        /** Returns the durability the repository's config selects */
+        public static Durability fromConfig() {
+            String value = Config.get(DURABILITY);
+            if (value == null) {
+                return BATCH;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException excp) {
+                throw error("Invalid value for %s: %s", DURABILITY, value);
+            }
+        }
+    }
+
+    /** The batch files are written into, or null to write each file on its own */
+    private static volatile WriteBatch open;
+
+    private final Durability durability;
+    /** Maps each file written in this batch to the temporary file holding its contents, in
+     * the order they were written */
+    private final Map<File, Pending> pending = new LinkedHashMap<>();
+    /** Run once the files written so far are in place */
+    private final List<Runnable> written = new ArrayList<>();
+    /** The number of pending files whose channel is still open */
+    private int openChannels;
+
+    /** A file's new contents, written to a temporary file that is renamed over it on commit */
+    private static class Pending {
+        final Path temp;
+        FileChannel channel;
+
+        Pending(Path temp, FileChannel channel) {
+            this.temp = temp;
+            this.channel = channel;
+        }
+    }
+
+    WriteBatch(Durability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Opens a batch with the configured durability, into which every file written is put
+     * until it is committed or closed. Batches do not nest.
+     */
+    public static WriteBatch begin() {
+        return begin(Durability.fromConfig());
+    }
+
+    /** Opens a batch with the given durability */
+    public static synchronized WriteBatch begin(Durability durability) {
+        if (open != null) {
+            throw new IllegalStateException("A write batch is already open");
+        }
+        open = new WriteBatch(durability);
+        return open;
+    }
+
+    /** Writes the contents to the file, in the open batch if there is one */
+    public static void write(File file, byte[] contents) {
+        write(file, contents, null);
+    }
+
+    /**
+     * Writes the contents to the file, in the open batch if there is one.
+     * @param written Run once the file is in place, durable as the batch promises; may be null
+     */
+    public static void write(File file, byte[] contents, Runnable written) {
+        WriteBatch batch = open;
+        if (batch != null) {
+            batch.add(file, contents, written);
+            return;
+        }
+        WriteBatch single = new WriteBatch(Durability.fromConfig());
+        single.add(file, contents, written);
+        single.commit();
+    }
+
+    /**
+     * Writes the contents to the file on its own, even while a batch is open. Used for files
+     * derived from others, such as indexes, which are read back as soon as they are written
+     * and can be rebuilt if lost, so need not wait for the objects they describe, and for
+     * files written by threads running alongside a command, whose batch they are not part of.
+     */
+    public static void writeNow(File file, byte[] contents) {
+        WriteBatch single = new WriteBatch(Durability.fromConfig());
+        single.add(file, contents, null);
+        single.commit();
+    }
+
+    /** Returns the contents of the file if it is written in the open batch but not yet in
+     * place, or null otherwise */
+    public static byte[] pending(File file) {
+        WriteBatch batch = open;
+        if (batch == null) {
+            return null;
+        }
+        Path temp;
+        synchronized (batch) {
+            Pending written = batch.pending.get(file);
+            if (written == null) {
+                return null;
+            }
+            temp = written.temp;
+        }
+        try {
+            return Files.readAllBytes(temp);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true if the file is written in the open batch but not yet in place */
+    public static boolean isPending(File file) {
+        WriteBatch batch = open;
+        if (batch == null) {
+            return false;
+        }
+        synchronized (batch) {
+            return batch.pending.containsKey(file);
+        }
+    }
+
+    /** Returns the durability of this batch */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /** Writes the contents to a temporary file next to the file, putting it in place now or
+     * on commit depending on the durability */
+    private void add(File file, byte[] contents, Runnable written) {
+        Path folder = file.getAbsoluteFile().getParentFile().toPath();
+        Path temp = null;
+        FileChannel channel = null;
+        try {
+            temp = Files.createTempFile(folder, file.getName() + ".", TEMP_SUFFIX);
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (durability != Durability.BATCH) {
+                if (durability == Durability.STRICT) {
+                    channel.force(true);
+                }
+                channel.close();
+                move(temp, file);
+                if (durability == Durability.STRICT) {
+                    syncFolder(folder);
+                }
+                if (written != null) {
+                    written.run();
+                }
+                return;
+            }
+        } catch (IOException excp) {
+            closeQuietly(channel);
+            deleteQuietly(temp);
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        synchronized (this) {
+            Pending replaced = pending.remove(file);
+            if (replaced != null) {
+                discard(replaced);
+            }
+            pending.put(file, new Pending(temp, channel));
+            openChannels++;
+            if (written != null) {
+                this.written.add(written);
+            }
+            if (openChannels > MAX_OPEN_CHANNELS) {
+                forceOldest();
+            }
+        }
+    }
+
+    /** Forces and closes the oldest open channels, until at most half the limit are open */
+    private void forceOldest() {
+        for (Pending file : pending.values()) {
+            if (openChannels <= MAX_OPEN_CHANNELS / 2) {
+                return;
+            }
+            if (file.channel != null) {
+                force(file);
+            }
+        }
+    }
+
+    /** Forces the file's contents to disk and closes its channel */
+    private void force(Pending file) {
+        try {
+            file.channel.force(true);
+            file.channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            file.channel = null;
+            openChannels--;
+        }
+    }
+
+    /**
+     * Puts every file written in this batch in place: forces all of them to disk, renames
+     * each over its file in the order they were written, then syncs each folder once.
+     * Ends the batch; files written afterwards are written on their own.
+     */
+    public synchronized void commit() {
+        List<Runnable> callbacks = new ArrayList<>(written);
+        try {
+            for (Pending file : pending.values()) {
+                if (file.channel != null) {
+                    force(file);
+                }
+            }
+            Set<Path> folders = new LinkedHashSet<>();
+            for (Map.Entry<File, Pending> file : pending.entrySet()) {
+                move(file.getValue().temp, file.getKey());
+                folders.add(file.getValue().temp.getParent());
+            }
+            for (Path folder : folders) {
+                syncFolder(folder);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            close();
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    /** Ends the batch, discarding the files written in it if it was not committed */
+    @Override
+    public synchronized void close() {
+        for (Pending file : pending.values()) {
+            discard(file);
+        }
+        pending.clear();
+        written.clear();
+        end();
+    }
+
+    /** Stops new writes going into this batch */
+    private void end() {
+        synchronized (WriteBatch.class) {
+            if (open == this) {
+                open = null;
+            }
+        }
+    }
+
+    /** Closes the pending file's channel and deletes its temporary file */
+    private void discard(Pending file) {
+        if (file.channel != null) {
+            closeQuietly(file.channel);
+            file.channel = null;
+            openChannels--;
+        }
+        deleteQuietly(file.temp);
+    }
+
+    /** Renames the temporary file over the file */
+    private static void move(Path temp, File file) throws IOException {
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            deleteQuietly(temp);
+            throw excp;
+        }
+    }
+
+    /** Syncs the folder, so the renames in it survive a crash. Platforms that cannot open a
+     * folder for syncing make renames durable without it, so failing to open one is ignored */
+    private static void syncFolder(Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            // not supported here
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            // the file is being discarded anyway
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException excp) {
+            // left behind as a temporary file, which is skipped when listing objects
+        }
+    }
+}
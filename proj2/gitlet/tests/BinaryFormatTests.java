@@ -0,0 +1,63 @@
+package gitlet.tests;
+
+import gitlet.BinaryFormat;
+import gitlet.Branch;
+import gitlet.BranchFormat;
+import gitlet.Commit;
+import gitlet.CommitFormat;
+import gitlet.Utils;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class BinaryFormatTests {
+
+    private Commit commit() {
+        TreeMap<String, String> blobs = new TreeMap<>();
+        blobs.put("a.txt", Utils.sha1("a"));
+        blobs.put("d\u00e9j\u00e0 vu.txt", Utils.sha1("b"));
+        return new Commit("A message\nover two lines", new Date(123456789), Utils.sha1("parent"),
+                Utils.sha1("second parent"), blobs);
+    }
+
+    @Test
+    public void commitsKeepTheirDigest() {
+        Commit commit = commit();
+        Commit decoded = new CommitFormat().decode(new CommitFormat().encode(commit));
+        assertEquals("Decoded commit should have the same digest", commit.digest(), decoded.digest());
+        assertEquals("Decoded commit should track the same files", commit.getBlobs(), decoded.getBlobs());
+
+        Commit initial = new Commit("initial commit", new Date(0), "", new TreeMap<>());
+        decoded = new CommitFormat().decode(new CommitFormat().encode(initial));
+        assertEquals("Missing parents should stay empty", initial.digest(), decoded.digest());
+    }
+
+    @Test
+    public void encodingIsSmallerThanSerialization() {
+        Commit commit = commit();
+        assertTrue("Binary encoding should be smaller than serialization",
+                new CommitFormat().encode(commit).length < Utils.serialize(commit).length);
+    }
+
+    @Test
+    public void serializedObjectsAreStillDecoded() {
+        Commit commit = commit();
+        Commit decoded = BinaryFormat.decode(new CommitFormat(), Utils.serialize(commit), Commit.class);
+        assertEquals("Serialized commits should still be readable", commit.digest(), decoded.digest());
+
+        Branch branch = new Branch("master", commit.digest());
+        Branch decodedBranch = BinaryFormat.decode(new BranchFormat(), Utils.serialize(branch), Branch.class);
+        assertEquals("Serialized branches should still be readable", branch.getCommitId(), decodedBranch.getCommitId());
+        decodedBranch = new BranchFormat().decode(new BranchFormat().encode(branch));
+        assertEquals("Branches should keep their name", "master", decodedBranch.getName());
+        assertEquals("Branches should keep their commit", commit.digest(), decodedBranch.getCommitId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherKindsOfObjectAreRejected() {
+        new CommitFormat().decode(new BranchFormat().encode(new Branch("master", Utils.sha1("c"))));
+    }
+}
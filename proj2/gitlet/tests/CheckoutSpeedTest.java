@@ -0,0 +1,102 @@
+package gitlet.tests;
+
+import gitlet.Blob;
+import gitlet.ParallelCheckout;
+import gitlet.Repository;
+import gitlet.Utils;
+import gitlet.WriteBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static gitlet.Main.*;
+
+/** Times writing the files of a checkout into an empty working tree with different numbers
+ *  of workers. Run it from an empty folder, on tmpfs to time the checkout rather than the
+ *  disk; it makes a repository there and removes it when done.
+ *  Usage: cd /dev/shm/empty && java gitlet.tests.CheckoutSpeedTest [FILES] [FILE_SIZE] [MAX_IN_FLIGHT_BYTES]
+ *  @author Jordan Kilfoy
+ */
+public class CheckoutSpeedTest {
+
+    /** Times measured for each number of workers, after one round to warm up */
+    private static final int ROUNDS = 5;
+
+    /** Files per folder of the working tree */
+    private static final int FILES_PER_FOLDER = 100;
+
+    public static void main(String[] args) throws IOException {
+        int numFiles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int fileSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        long maxInFlightBytes = args.length > 2 ? Long.parseLong(args[2])
+                : ParallelCheckout.DEFAULT_MAX_IN_FLIGHT_BYTES;
+        if (GITLET_DIR.exists()) {
+            throw new IllegalStateException("Run from a folder without a repository");
+        }
+
+        Repository.init();
+        try {
+            TreeMap<String, String> files = persistFiles(numFiles, fileSize);
+            TreeSet<Integer> workerCounts = new TreeSet<>(Arrays.asList(1, 2, 4, 8,
+                    Runtime.getRuntime().availableProcessors()));
+            System.out.printf("%d files of %d bytes in %s, at most %d bytes in flight%n",
+                    numFiles, fileSize, CWD, maxInFlightBytes);
+            for (int workers : workerCounts) {
+                long[] times = new long[ROUNDS];
+                for (int round = -1; round < ROUNDS; round++) {
+                    deleteWorkingFiles(files);
+                    long start = System.nanoTime();
+                    ParallelCheckout.write(files, workers, maxInFlightBytes);
+                    if (round >= 0) {
+                        times[round] = System.nanoTime() - start;
+                    }
+                }
+                Arrays.sort(times);
+                System.out.printf("%2d workers: median %8.2f ms%n", workers,
+                        times[ROUNDS / 2] / (double) TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(CWD.toPath())) {
+                paths.sorted(Comparator.reverseOrder())
+                        .filter(path -> !path.equals(CWD.toPath()))
+                        .map(Path::toFile)
+                        .forEach(File::delete);
+            }
+        }
+    }
+
+    /** Stores a blob of random text for each file, returning the blob id of each file's path */
+    private static TreeMap<String, String> persistFiles(int numFiles, int fileSize) {
+        Random random = new Random(23);
+        TreeMap<String, String> files = new TreeMap<>();
+        try (WriteBatch batch = WriteBatch.begin(WriteBatch.Durability.NONE)) {
+            for (int i = 0; i < numFiles; i++) {
+                byte[] contents = new byte[fileSize];
+                for (int j = 0; j < fileSize; j++) {
+                    contents[j] = j % 64 == 63 ? (byte) '\n' : (byte) ('a' + random.nextInt(26));
+                }
+                String filename = "d" + i / FILES_PER_FOLDER + "/f" + i + ".txt";
+                Blob blob = new Blob(contents, filename);
+                TRACKED_BLOBS.persist(blob);
+                files.put(filename, blob.digest());
+            }
+            batch.commit();
+        }
+        return files;
+    }
+
+    private static void deleteWorkingFiles(TreeMap<String, String> files) {
+        for (String filename : files.keySet()) {
+            Utils.join(CWD, filename).delete();
+        }
+    }
+}
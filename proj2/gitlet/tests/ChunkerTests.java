@@ -0,0 +1,71 @@
+package gitlet.tests;
+
+import gitlet.Chunker;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ChunkerTests {
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static List<byte[]> split(byte[] contents) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        Chunker.split(Channels.newChannel(new ByteArrayInputStream(contents)), chunks::add);
+        return chunks;
+    }
+
+    @Test
+    public void chunksReassembleToContents() throws IOException {
+        byte[] contents = randomBytes(1_000_000, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] chunk : split(contents)) {
+            out.writeBytes(chunk);
+        }
+        assertArrayEquals("Chunks should reassemble into the original contents", contents, out.toByteArray());
+    }
+
+    @Test
+    public void chunkSizesAreBounded() throws IOException {
+        List<byte[]> chunks = split(randomBytes(1_000_000, 2));
+        for (int i = 0; i < chunks.size(); i++) {
+            assertTrue("Chunks should not exceed the max size", chunks.get(i).length <= Chunker.MAX_SIZE);
+            if (i < chunks.size() - 1) {
+                assertTrue("Only the last chunk may be under the min size", chunks.get(i).length >= Chunker.MIN_SIZE);
+            }
+        }
+        assertTrue("Random contents should average close to the target size",
+                chunks.size() > 1_000_000 / (4 * Chunker.AVG_SIZE));
+    }
+
+    @Test
+    public void insertingBytesOnlyChangesNearbyChunks() throws IOException {
+        byte[] contents = randomBytes(1_000_000, 3);
+        byte[] edited = new byte[contents.length + 10];
+        System.arraycopy(contents, 0, edited, 0, 500_000);
+        System.arraycopy(contents, 500_000, edited, 500_010, 500_000);
+
+        Set<String> originalChunks = new HashSet<>();
+        for (byte[] chunk : split(contents)) {
+            originalChunks.add(Arrays.toString(chunk));
+        }
+        List<byte[]> editedChunks = split(edited);
+        int changed = 0;
+        for (byte[] chunk : editedChunks) {
+            if (!originalChunks.contains(Arrays.toString(chunk))) {
+                changed++;
+            }
+        }
+        assertTrue("Only the chunks around the edit should change", changed <= 3);
+    }
+}
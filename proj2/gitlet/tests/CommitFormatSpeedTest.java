@@ -0,0 +1,80 @@
+package gitlet.tests;
+
+import gitlet.BinaryFormat;
+import gitlet.Commit;
+import gitlet.CommitFormat;
+import gitlet.Utils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Compares the size and the encode and decode time of commits written with Java serialization
+ *  and with their binary format, for commits tracking many files.
+ *  Usage: java gitlet.tests.CommitFormatSpeedTest [NUM_COMMITS] [FILES_PER_COMMIT]
+ *  @author Jordan Kilfoy
+ */
+public class CommitFormatSpeedTest {
+
+    /** Rounds run before timing, so both encodings are measured once the JIT has compiled them */
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int numCommits = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int filesPerCommit = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        List<Commit> commits = commits(numCommits, filesPerCommit);
+        BinaryFormat<Commit> format = new CommitFormat();
+
+        System.out.printf("%d commits tracking %d files each%n", numCommits, filesPerCommit);
+        System.out.printf("%-14s %14s %14s %14s%n", "encoding", "bytes/commit", "encode us", "decode us");
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean print = round == WARMUP_ROUNDS;
+            time("serialization", commits, null, print);
+            time("binary", commits, format, print);
+        }
+    }
+
+    /** Encodes then decodes every commit, and prints the average size and time per commit */
+    private static void time(String label, List<Commit> commits, BinaryFormat<Commit> format, boolean print) {
+        List<byte[]> encoded = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Commit commit : commits) {
+            encoded.add(BinaryFormat.encode(format, commit));
+        }
+        double encodeMicros = (System.nanoTime() - start) / 1e3 / commits.size();
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (byte[] bytes : encoded) {
+            checksum += BinaryFormat.decode(format, bytes, Commit.class).getBlobs().size();
+        }
+        double decodeMicros = (System.nanoTime() - start) / 1e3 / commits.size();
+
+        long totalBytes = 0;
+        for (byte[] bytes : encoded) {
+            totalBytes += bytes.length;
+        }
+        if (print && checksum > 0) {
+            System.out.printf("%-14s %14d %14.1f %14.1f%n", label,
+                    totalBytes / commits.size(), encodeMicros, decodeMicros);
+        }
+    }
+
+    /** Returns a chain of commits, each changing one of the files tracked by its parent */
+    private static List<Commit> commits(int numCommits, int filesPerCommit) {
+        TreeMap<String, String> blobs = new TreeMap<>();
+        for (int i = 0; i < filesPerCommit; i++) {
+            blobs.put("src/gitlet/File" + i + ".java", Utils.sha1("file", Integer.toString(i)));
+        }
+        List<Commit> commits = new ArrayList<>();
+        String parentId = "";
+        for (int i = 0; i < numCommits; i++) {
+            blobs.put("src/gitlet/File" + (i % filesPerCommit) + ".java", Utils.sha1("edit", Integer.toString(i)));
+            Commit commit = new Commit("Edit number " + i, new Date(i * 1000L), parentId, new TreeMap<>(blobs));
+            commits.add(commit);
+            parentId = commit.digest();
+        }
+        return commits;
+    }
+}
@@ -0,0 +1,148 @@
+package gitlet.tests;
+
+import gitlet.Commit;
+import gitlet.CommitGraph;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class CommitGraphTests {
+
+    File testFolder;
+    File graphFile;
+    ObjectStore<Commit> commitStore;
+    List<String> heads;
+    CommitGraph graph;
+    int time;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        File commitFolder = Utils.join(testFolder, "commits");
+        commitFolder.mkdir();
+        commitStore = new ObjectStore<>(commitFolder, Commit.class);
+        graphFile = Utils.join(testFolder, "commit-graph");
+        heads = new ArrayList<>();
+        graph = new CommitGraph(graphFile, commitStore, () -> heads);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    /** Stores a commit with the given parents, adding it to the graph, and returns its id */
+    private String commit(String message, String parentId, String secondParentId) {
+        Commit commit = new Commit(message, new Date(time++), parentId, secondParentId, new TreeMap<>());
+        commitStore.persist(commit);
+        graph.add(commit);
+        return commit.digest();
+    }
+
+    private String commit(String message, String parentId) {
+        return commit(message, parentId, "");
+    }
+
+    @Test
+    public void generationsCountTheLongestPathToTheRoot() {
+        String root = commit("root", "");
+        String a = commit("a", root);
+        String b = commit("b", a);
+        String c = commit("c", root);
+        String merge = commit("merge", c, b);
+        assertEquals(1, graph.generation(root));
+        assertEquals(3, graph.generation(b));
+        assertEquals(2, graph.generation(c));
+        assertEquals("A merge should be above both of its parents", 4, graph.generation(merge));
+        assertTrue(graph.isAncestor(root, merge));
+        assertTrue(graph.isAncestor(b, merge));
+        assertFalse(graph.isAncestor(b, c));
+    }
+
+    @Test
+    public void mergeBaseOfDivergedBranches() {
+        String root = commit("root", "");
+        String split = commit("split", root);
+        String left = commit("left2", commit("left1", split));
+        String right = commit("right", split);
+        assertEquals(List.of(split), graph.mergeBases(left, right));
+        assertEquals("An ancestor should be its own merge base", split, graph.mergeBase(split, left));
+        assertEquals(left, graph.mergeBase(left, left));
+    }
+
+    @Test
+    public void mergeBaseAfterEarlierMerge() {
+        String root = commit("root", "");
+        String left = commit("left", root);
+        String right = commit("right", root);
+        String merged = commit("merge right into left", left, right);
+        String laterRight = commit("later right", right);
+        String laterLeft = commit("later left", merged);
+        assertEquals("The merged-in commit should be the merge base",
+                List.of(right), graph.mergeBases(laterLeft, laterRight));
+    }
+
+    @Test
+    public void crissCrossHistoryHasTwoMergeBases() {
+        String root = commit("root", "");
+        String a = commit("a", root);
+        String b = commit("b", root);
+        String left = commit("merge b into a", a, b);
+        String right = commit("merge a into b", b, a);
+        assertEquals("Both sides of a criss-cross should be merge bases",
+                Set.of(a, b), new HashSet<>(graph.mergeBases(left, right)));
+        assertTrue(Set.of(a, b).contains(graph.mergeBase(left, right)));
+    }
+
+    @Test
+    public void graphIsPersistedAndRebuilt() {
+        String root = commit("root", "");
+        String left = commit("left", root);
+        String right = commit("right", root);
+
+        CommitGraph reloaded = new CommitGraph(graphFile, commitStore, () -> heads);
+        assertEquals("Reloaded graph should keep generations", 2, reloaded.generation(left));
+        assertEquals(root, reloaded.mergeBase(left, right));
+
+        assertTrue(graphFile.delete());
+        heads.add(left);
+        CommitGraph rebuilt = new CommitGraph(graphFile, commitStore, () -> heads);
+        assertTrue("Rebuilt graph should contain the branch heads", rebuilt.contains(left));
+        assertFalse("Rebuilt graph should only contain reachable commits", rebuilt.contains(right));
+        assertEquals("Missing commits should be added when looked up", root, rebuilt.mergeBase(left, right));
+        assertTrue(rebuilt.contains(right));
+    }
+
+    @Test
+    public void longHistoryIsRebuiltWithoutRecursion() {
+        String parent = "";
+        for (int i = 0; i < 10000; i++) {
+            Commit commit = new Commit("commit " + i, new Date(time++), parent, "", new TreeMap<>());
+            commitStore.persist(commit);
+            parent = commit.digest();
+        }
+        Commit side = new Commit("side", new Date(time++), parent, "", new TreeMap<>());
+        commitStore.persist(side);
+        assertFalse(graphFile.exists());
+        heads.add(parent);
+        CommitGraph rebuilt = new CommitGraph(graphFile, commitStore, () -> heads);
+        assertTrue("Every ancestor should be added before the head", rebuilt.contains(parent));
+        assertEquals(10000, rebuilt.generation(parent));
+        assertEquals(parent, rebuilt.mergeBase(parent, side.digest()));
+    }
+}
@@ -0,0 +1,98 @@
+package gitlet.tests;
+
+import gitlet.Commit;
+import gitlet.CommitWalker;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class CommitWalkerTests {
+
+    File testFolder;
+    ObjectStore<Commit> commitStore;
+    /** Ids of a chain of commits, from the initial commit to the newest */
+    List<String> chain;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        File commitFolder = Utils.join(testFolder, "commits");
+        commitFolder.mkdir();
+        commitStore = new ObjectStore<>(commitFolder, Commit.class);
+        chain = new ArrayList<>();
+        String parentId = "";
+        for (int i = 0; i < 200; i++) { // longer than the prefetch window
+            Commit commit = new Commit("commit " + i, new Date(i * 1000L), parentId, "", new TreeMap<>());
+            commitStore.persist(commit);
+            parentId = commit.digest();
+            chain.add(parentId);
+        }
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private List<String> walk(int maxCount, Date since) {
+        List<String> ids = new ArrayList<>();
+        try (CommitWalker walker = new CommitWalker(commitStore, chain.get(chain.size() - 1), maxCount, since)) {
+            while (walker.hasNext()) {
+                ids.add(walker.next().digest());
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    public void walksEveryFirstParentNewestFirst() {
+        List<String> expected = new ArrayList<>(chain);
+        Collections.reverse(expected);
+        assertEquals(expected, walk(Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    public void stopsAfterCountOrBeforeOlderCommits() {
+        assertEquals(List.of(chain.get(199), chain.get(198), chain.get(197)), walk(3, null));
+        assertEquals(List.of(chain.get(199), chain.get(198)), walk(Integer.MAX_VALUE, new Date(198 * 1000L)));
+        assertTrue(walk(0, null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reportsMissingCommits() {
+        commitStore.clear(chain.get(100));
+        walk(Integer.MAX_VALUE, null);
+    }
+
+    @Test
+    public void closingStopsReadingAhead() throws InterruptedException {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        CommitWalker walker = new CommitWalker(commitStore, chain.get(chain.size() - 1), Integer.MAX_VALUE, null);
+        Set<Thread> readers = new HashSet<>(Thread.getAllStackTraces().keySet());
+        readers.removeAll(before);
+        readers.removeIf(thread -> !thread.getName().equals("commit-walker"));
+        assertEquals("The walker should read on one thread of its own", 1, readers.size());
+        Thread reader = readers.iterator().next();
+
+        assertEquals(chain.get(199), walker.next().digest());
+        assertTrue("The reader should wait with the queue full", reader.isAlive());
+        walker.close();
+        reader.join(5000);
+        assertFalse("Closing should stop the reader", reader.isAlive());
+    }
+}
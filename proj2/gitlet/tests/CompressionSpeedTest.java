@@ -0,0 +1,113 @@
+package gitlet.tests;
+
+import gitlet.Blob;
+import gitlet.Codec;
+import gitlet.Codecs;
+import gitlet.DeflateCodec;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Main.CWD;
+
+/** Compares the write and read throughput and the size on disk of an object store
+ *  holding source-like text blobs, stored uncompressed and at several Deflater levels.
+ *  Usage: java gitlet.tests.CompressionSpeedTest [NUM_BLOBS] [BLOB_SIZE]
+ *  @author Jordan Kilfoy
+ */
+public class CompressionSpeedTest {
+
+    private static final String[] WORDS = {
+        "public", "private", "static", "final", "void", "int", "String", "return", "if", "else",
+        "for", "while", "new", "this", "null", "true", "false", "commit", "blob", "branch",
+        "getHead()", "persist", "read", "filename", "contents", "=", "==", "+", "(", ")", "{", "}", ";",
+    };
+
+    public static void main(String[] args) throws IOException {
+        int numBlobs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int blobSize = args.length > 1 ? Integer.parseInt(args[1]) : 16 * 1024;
+        List<Blob> blobs = sourceLikeBlobs(numBlobs, blobSize);
+        long totalBytes = (long) numBlobs * blobSize;
+
+        System.out.printf("%d blobs of %d bytes of source-like text%n", numBlobs, blobSize);
+        System.out.printf("%-12s %12s %12s %12s %8s%n", "codec", "write MB/s", "read MB/s", "disk bytes", "ratio");
+        // Levels to compare, where 0 stands for storing objects uncompressed
+        int[] levels = {0, 1, 3, 6, 9};
+        timeCodec("warmup", Codecs.NONE, blobs, totalBytes, false);
+        for (int level : levels) {
+            Codec codec = level == 0 ? Codecs.NONE : new DeflateCodec(level);
+            timeCodec(level == 0 ? "none" : "deflate-" + level, codec, blobs, totalBytes, true);
+        }
+    }
+
+    /** Writes then reads back every blob through a store using the codec, and prints the results */
+    private static void timeCodec(String label, Codec codec, List<Blob> blobs, long totalBytes,
+                                  boolean print) throws IOException {
+        File folder = Utils.join(CWD, "compression-speed-test", "blobs");
+        folder.mkdirs();
+        try {
+            ObjectStore<Blob> store = new ObjectStore<>(folder, Blob.class, false);
+            store.setCodec(codec);
+            long start = System.nanoTime();
+            for (Blob blob : blobs) {
+                store.persist(blob);
+            }
+            double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+            ObjectStore<Blob> reader = new ObjectStore<>(folder, Blob.class, false);
+            start = System.nanoTime();
+            for (Blob blob : blobs) {
+                reader.read(blob.digest()).getContents();
+            }
+            double readSeconds = (System.nanoTime() - start) / 1e9;
+
+            long diskBytes = 0;
+            for (File file : folder.listFiles()) {
+                diskBytes += file.length();
+            }
+            if (!print) {
+                return;
+            }
+            System.out.printf("%-12s %12.1f %12.1f %12d %8.2f%n", label,
+                    totalBytes / 1e6 / writeSeconds, totalBytes / 1e6 / readSeconds,
+                    diskBytes, (double) totalBytes / diskBytes);
+        } finally {
+            Files.walk(folder.getParentFile().toPath())
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** Returns blobs of pseudo-random source code, with a fixed seed so runs are comparable */
+    private static List<Blob> sourceLikeBlobs(int numBlobs, int blobSize) {
+        Random random = new Random(61);
+        List<Blob> blobs = new ArrayList<>();
+        for (int i = 0; i < numBlobs; i++) {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < blobSize) {
+                sb.append("    ".repeat(1 + random.nextInt(3)));
+                for (int words = 3 + random.nextInt(8); words > 0; words--) {
+                    sb.append(WORDS[random.nextInt(WORDS.length)]);
+                    if (random.nextInt(4) == 0) {
+                        sb.append(random.nextInt(1000));
+                    }
+                    sb.append(' ');
+                }
+                sb.append('\n');
+            }
+            sb.setLength(blobSize);
+            blobs.add(new Blob(sb.toString().getBytes(StandardCharsets.UTF_8), "File" + i + ".java"));
+        }
+        return blobs;
+    }
+}
@@ -0,0 +1,62 @@
+package gitlet.tests;
+
+import gitlet.Delta;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DeltaTests {
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void appliedDeltaRebuildsTarget() {
+        byte[] base = randomBytes(20000, 1);
+        byte[] target = new byte[base.length + 300];
+        System.arraycopy(base, 0, target, 0, 5000);
+        System.arraycopy(randomBytes(300, 2), 0, target, 5000, 300);
+        System.arraycopy(base, 5000, target, 5300, 15000);
+        target[12345] ^= 1;
+
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals("Applying the delta should rebuild the target", target, Delta.apply(base, delta));
+        assertTrue("A delta between similar contents should be small", delta.length < 1000);
+    }
+
+    @Test
+    public void unrelatedAndEmptyContentsRoundTrip() {
+        byte[] base = randomBytes(5000, 3);
+        byte[] target = randomBytes(7000, 4);
+        assertArrayEquals("Unrelated contents should round trip", target, Delta.apply(base, Delta.create(base, target)));
+        assertArrayEquals("Empty targets should round trip", new byte[0],
+                Delta.apply(base, Delta.create(base, new byte[0])));
+        assertArrayEquals("Empty bases should round trip", target,
+                Delta.apply(new byte[0], Delta.create(new byte[0], target)));
+    }
+
+    @Test
+    public void textEditsProduceSmallDeltas() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("line number ").append(i).append(System.lineSeparator());
+        }
+        byte[] base = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] target = sb.toString().replace("line number 1000", "edited line").getBytes(StandardCharsets.UTF_8);
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals("Applying the delta should rebuild the target", target, Delta.apply(base, delta));
+        assertTrue("A one line edit should produce a tiny delta", delta.length < 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaRejectsWrongBase() {
+        byte[] delta = Delta.create(randomBytes(100, 5), randomBytes(100, 6));
+        Delta.apply(randomBytes(99, 5), delta);
+    }
+}
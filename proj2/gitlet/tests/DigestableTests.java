@@ -2,6 +2,7 @@ package gitlet.tests;
 
 import gitlet.Blob;
 import gitlet.Commit;
+import gitlet.Utils;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
@@ -69,4 +70,16 @@ public class DigestableTests {
         Commit commitCopy = new Commit("same", now, "0123456789", map2);
         assertNotEquals("Objects with different fields should give different digests", commit.digest(), commitCopy.digest());
     }
+
+    @Test
+    public void binaryContentsAreDigestedAsBytes() {
+        // Both arrays are invalid UTF-8, and would decode to the same replacement characters
+        Blob blob1 = new Blob(new byte[] {(byte) 0xff, (byte) 0xfe}, "blob");
+        Blob blob2 = new Blob(new byte[] {(byte) 0xfe, (byte) 0xff}, "blob");
+        assertNotEquals("Binary contents should not be corrupted before hashing", blob1.digest(), blob2.digest());
+
+        Blob text = new Blob("h\u00e9llo".getBytes(StandardCharsets.UTF_8), "blob");
+        assertEquals("Text contents should hash the same as before",
+                Utils.sha1("h\u00e9llo", "blob"), text.digest());
+    }
 }
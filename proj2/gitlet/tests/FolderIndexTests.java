@@ -0,0 +1,86 @@
+package gitlet.tests;
+
+import gitlet.FolderIndex;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class FolderIndexTests {
+
+    File testFolder;
+    File indexFile;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        indexFile = Utils.join(testFolder, "objects.idx");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(Utils.sha1("object" + i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void addedIdsPersistAcrossInstances() {
+        List<String> ids = ids(3000); // enough to force the tail to be compacted
+        FolderIndex index = new FolderIndex(indexFile, ArrayList::new);
+        for (String id : ids) {
+            index.add(id);
+        }
+        FolderIndex reopened = new FolderIndex(indexFile, ArrayList::new);
+        for (String id : ids) {
+            assertTrue("Added ids should be found after reopening", reopened.contains(id));
+        }
+        assertFalse("Missing ids should not be found", reopened.contains(Utils.sha1("missing")));
+        List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals("Ids should be listed in sorted order", sorted, reopened.ids());
+    }
+
+    @Test
+    public void removedIdsAreNotFound() {
+        List<String> ids = ids(10);
+        FolderIndex index = new FolderIndex(indexFile, ArrayList::new);
+        for (String id : ids) {
+            index.add(id);
+        }
+        index.remove(ids.get(4));
+        FolderIndex reopened = new FolderIndex(indexFile, ArrayList::new);
+        assertFalse("Removed id should not be found", reopened.contains(ids.get(4)));
+        assertEquals("Other ids should remain", 9, reopened.ids().size());
+
+        reopened.clear();
+        assertTrue("Cleared index should be empty", new FolderIndex(indexFile, ArrayList::new).ids().isEmpty());
+    }
+
+    @Test
+    public void missingIndexIsRebuiltFromScan() {
+        List<String> ids = ids(5);
+        FolderIndex index = new FolderIndex(indexFile, () -> ids);
+        assertTrue("Scanned ids should be found", index.contains(ids.get(0)));
+        assertTrue("The rebuilt index should be written", indexFile.exists());
+    }
+}
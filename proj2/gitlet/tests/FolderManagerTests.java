@@ -117,4 +117,22 @@ public class FolderManagerTests {
         commitFolderManager.persist(c1);
         assertTrue("Folder should contain the commit by digest fileName", commitFolderManager.contains(c1.digest()));
     }
+
+    @Test
+    public void compareAndPersistChecksTheStoredObject() {
+        stringFolderManager = new FolderManager<>(stringFolder, String.class);
+        assertTrue("Should persist when nothing is expected or stored",
+                stringFolderManager.compareAndPersist(null, "first", "ref"));
+        assertFalse("Should not persist when something unexpected is stored",
+                stringFolderManager.compareAndPersist(null, "second", "ref"));
+
+        // Another manager of the same folder, as in another process, changes the object
+        new FolderManager<>(stringFolder, String.class).persist("changed elsewhere", "ref");
+        assertFalse("Should compare against the stored object, not the cached one",
+                stringFolderManager.compareAndPersist("first", "second", "ref"));
+        assertTrue(stringFolderManager.compareAndPersist("changed elsewhere", "second", "ref"));
+        assertEquals("second", new FolderManager<>(stringFolder, String.class).read("ref"));
+        assertEquals("Atomic writes should leave no temporary files",
+                List.of("ref"), stringFolderManager.names());
+    }
 }
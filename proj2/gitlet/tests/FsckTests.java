@@ -0,0 +1,97 @@
+package gitlet.tests;
+
+import gitlet.Commit;
+import gitlet.Fsck;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class FsckTests {
+
+    File testFolder;
+    File commitFolder;
+    ObjectStore<Commit> commitStore;
+    List<String> problems;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        commitFolder = Utils.join(testFolder, "commits");
+        commitFolder.mkdir();
+        commitStore = new ObjectStore<>(commitFolder, Commit.class);
+        problems = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private List<String> persistCommits(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Commit commit = new Commit("commit " + i, new Date(i), "", new TreeMap<>());
+            commitStore.persist(commit);
+            ids.add(commit.digest());
+        }
+        return ids;
+    }
+
+    private long verify(int workers) {
+        return Fsck.verify(commitStore, "commit", Commit::digest, (id, commit, report) -> true,
+                workers, problems::add);
+    }
+
+    @Test
+    public void intactObjectsHaveNoProblems() {
+        persistCommits(50);
+        commitStore.repack();
+        persistCommits(60);
+        assertEquals("Every loose and packed object should be checked", 60, verify(4));
+        assertEquals("Intact objects should have no problems", List.of(), problems);
+    }
+
+    @Test
+    public void reportsEveryDamagedObject() {
+        List<String> ids = persistCommits(20);
+        Utils.writeContents(Utils.join(commitFolder, ids.get(3)),
+                (Object) Utils.readContents(Utils.join(commitFolder, ids.get(4))));
+        Utils.writeContents(Utils.join(commitFolder, ids.get(7)), "not a commit");
+        Utils.join(commitFolder, ids.get(11)).delete();
+        assertEquals(20, verify(4));
+
+        Collections.sort(problems);
+        assertEquals("Each damaged object should be reported once", 3, problems.size());
+        assertTrue("A renamed object should hash to another id",
+                problems.contains("corrupt commit " + ids.get(3) + ": contents hash to " + ids.get(4)));
+        assertTrue("A deleted object should be missing", problems.contains("missing commit " + ids.get(11)));
+        assertTrue("An overwritten object should be unreadable",
+                problems.stream().anyMatch(problem -> problem.startsWith("unreadable commit " + ids.get(7))));
+    }
+
+    @Test
+    public void reportsTheSameProblemsWithOneWorker() {
+        List<String> ids = persistCommits(10);
+        Utils.writeContents(Utils.join(commitFolder, ids.get(0)), "not a commit");
+        verify(1);
+        List<String> sequential = new ArrayList<>(problems);
+        problems.clear();
+        verify(8);
+        assertEquals(sequential, problems);
+    }
+}
@@ -0,0 +1,89 @@
+package gitlet.tests;
+
+import gitlet.Blob;
+import gitlet.Index;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class IndexTests {
+
+    File testFolder;
+    File indexFile;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        indexFile = Utils.join(testFolder, "index");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    /** Writes the file with the given contents and modification time */
+    private File write(String filename, String contents, long modified) {
+        File file = Utils.join(testFolder, filename);
+        Utils.writeContents(file, contents);
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+
+    @Test
+    public void unchangedFilesAreNotRehashed() {
+        File file = write("a.txt", "version 1", 1_000_000);
+        Index index = new Index(indexFile, testFolder);
+        String id = index.blobId("a.txt");
+        assertEquals(Blob.digestFile(file, "a.txt"), id);
+        index.save();
+
+        // Same size and modification time: the recorded id is trusted without reading the file
+        write("a.txt", "version 2", 1_000_000);
+        assertEquals("Files with unchanged stat data should not be re-hashed",
+                id, new Index(indexFile, testFolder).blobId("a.txt"));
+
+        write("a.txt", "version 2", 2_000_000);
+        assertNotEquals("Files with a new modification time should be re-hashed",
+                id, new Index(indexFile, testFolder).blobId("a.txt"));
+    }
+
+    @Test
+    public void filesModifiedAfterTheIndexAreRehashed() {
+        write("a.txt", "version 1", System.currentTimeMillis() + 60_000);
+        Index index = new Index(indexFile, testFolder);
+        String id = index.blobId("a.txt");
+        index.save();
+
+        // The file is not older than the index, so its stat data cannot be trusted
+        write("a.txt", "version 2", Utils.join(testFolder, "a.txt").lastModified());
+        assertNotEquals("Racily clean files should be re-hashed",
+                id, new Index(indexFile, testFolder).blobId("a.txt"));
+    }
+
+    @Test
+    public void deletedFilesHaveNoBlob() {
+        write("a.txt", "contents", 1_000_000);
+        Index index = new Index(indexFile, testFolder);
+        index.record("a.txt", Utils.sha1("recorded"));
+        index.save();
+        assertEquals("Recorded ids should be used", Utils.sha1("recorded"),
+                new Index(indexFile, testFolder).blobId("a.txt"));
+        assertTrue(Utils.join(testFolder, "a.txt").delete());
+        assertNull("Deleted files should have no blob", new Index(indexFile, testFolder).blobId("a.txt"));
+    }
+}
@@ -0,0 +1,95 @@
+package gitlet.tests;
+
+import gitlet.LineMerge;
+import gitlet.MyersDiff;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineMergeTests {
+
+    private static final String NL = System.lineSeparator();
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String merge(String base, String current, String given) {
+        return new String(LineMerge.merge(bytes(base), bytes(current), bytes(given)).getContents(),
+                StandardCharsets.UTF_8);
+    }
+
+    /** Returns the length of the longest common subsequence of a and b, by dynamic programming */
+    private static int lcsLength(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                lengths[i][j] = a[i] == b[j] ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+    @Test
+    public void diffFindsALongestCommonSubsequence() {
+        Random random = new Random(61);
+        for (int round = 0; round < 500; round++) {
+            int[] a = new int[random.nextInt(30)];
+            int[] b = new int[random.nextInt(30)];
+            for (int i = 0; i < a.length; i++) a[i] = random.nextInt(4);
+            for (int i = 0; i < b.length; i++) b[i] = random.nextInt(4);
+
+            int[] matches = MyersDiff.matches(a, b);
+            int matched = 0;
+            int last = -1;
+            for (int i = 0; i < a.length; i++) {
+                if (matches[i] == MyersDiff.UNMATCHED) continue;
+                assertTrue("Matches should be increasing", matches[i] > last);
+                assertEquals("Matched lines should be equal", a[i], b[matches[i]]);
+                last = matches[i];
+                matched++;
+            }
+            assertEquals("Should match as many lines as possible", lcsLength(a, b), matched);
+        }
+    }
+
+    @Test
+    public void mergesChangesToDifferentLines() {
+        String base = "a\nb\nc\nd\ne\n";
+        assertEquals("A\nb\nc\nd\nE\n", merge(base, "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n"));
+        assertEquals("a\nx\nb\nc\nd\n", merge(base, "a\nx\nb\nc\nd\ne\n", "a\nb\nc\nd\n"));
+        assertFalse(LineMerge.merge(bytes(base), bytes("A\nb\nc\nd\ne\n"), bytes("a\nb\nc\nd\nE\n")).hasConflicts());
+    }
+
+    @Test
+    public void takesIdenticalChangesOnce() {
+        assertEquals("a\nB\nc\n", merge("a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n"));
+    }
+
+    @Test
+    public void marksOverlappingChangesAsConflicts() {
+        LineMerge.Result result = LineMerge.merge(bytes("a\nb\nc\n"), bytes("a\nB1\nc\n"), bytes("a\nB2\nc\n"));
+        assertEquals(1, result.getConflicts());
+        assertEquals("a\n<<<<<<< HEAD" + NL + "B1\n=======" + NL + "B2\n>>>>>>>" + NL + "c\n",
+                new String(result.getContents(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void singleLineConflictMatchesWholeFileConflict() {
+        String expected = new String(LineMerge.conflict(bytes("This is not a wug.\n"), bytes("This is a wug too.\n")),
+                StandardCharsets.UTF_8);
+        assertEquals(expected, merge("This is a wug.\n", "This is not a wug.\n", "This is a wug too.\n"));
+        assertEquals("<<<<<<< HEAD" + NL + "This is not a wug.\n=======" + NL + "This is a wug too.\n>>>>>>>" + NL,
+                expected);
+    }
+
+    @Test
+    public void endsUnterminatedLinesBeforeMarkers() {
+        assertEquals("<<<<<<< HEAD" + NL + "x" + NL + "=======" + NL + "y" + NL + ">>>>>>>" + NL,
+                merge("", "x", "y"));
+    }
+}
@@ -0,0 +1,76 @@
+package gitlet.tests;
+
+import gitlet.LineMerge;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Times three-way line merges of large files with many changes on both sides that do not
+ *  overlap, one file at a time and several files in parallel.
+ *  Usage: java gitlet.tests.MergeSpeedTest [LINES] [HUNKS] [FILES]
+ *  @author Jordan Kilfoy
+ */
+public class MergeSpeedTest {
+
+    /** Rounds run before timing, so merges are measured once the JIT has compiled them */
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int numLines = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int numHunks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int numFiles = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        List<byte[][]> files = new ArrayList<>();
+        for (int i = 0; i < numFiles; i++) {
+            files.add(versions(numLines, numHunks, i));
+        }
+        System.out.printf("%d files of %d lines, with %d changed hunks on each side%n", numFiles, numLines, numHunks);
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean print = round == WARMUP_ROUNDS;
+            long start = System.nanoTime();
+            byte[][] first = files.get(0);
+            LineMerge.Result result = LineMerge.merge(first[0], first[1], first[2]);
+            long one = System.nanoTime() - start;
+            if (result.hasConflicts()) {
+                throw new AssertionError("hunks should not conflict");
+            }
+
+            start = System.nanoTime();
+            files.forEach(versions -> LineMerge.merge(versions[0], versions[1], versions[2]));
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            files.parallelStream().forEach(versions -> LineMerge.merge(versions[0], versions[1], versions[2]));
+            long parallel = System.nanoTime() - start;
+            if (print) {
+                System.out.printf("one file:   %6d ms%n", TimeUnit.NANOSECONDS.toMillis(one));
+                System.out.printf("sequential: %6d ms%n", TimeUnit.NANOSECONDS.toMillis(sequential));
+                System.out.printf("parallel:   %6d ms (%d cores)%n", TimeUnit.NANOSECONDS.toMillis(parallel),
+                        Runtime.getRuntime().availableProcessors());
+            }
+        }
+    }
+
+    /** Returns the base, current and given versions of a file, where the current side changes
+     *  hunks at even positions and the given side at odd ones */
+    private static byte[][] versions(int numLines, int numHunks, int seed) {
+        StringBuilder base = new StringBuilder();
+        StringBuilder current = new StringBuilder();
+        StringBuilder given = new StringBuilder();
+        int spacing = Math.max(1, numLines / (2 * numHunks));
+        for (int i = 0; i < numLines; i++) {
+            String line = "line " + i + " of file " + seed + "\n";
+            base.append(line);
+            int hunk = i / spacing;
+            boolean changed = i % spacing == 0 && hunk < 2 * numHunks;
+            current.append(changed && hunk % 2 == 0 ? "current " + line : line);
+            given.append(changed && hunk % 2 == 1 ? "given " + line : line);
+        }
+        return new byte[][] {
+            base.toString().getBytes(StandardCharsets.UTF_8),
+            current.toString().getBytes(StandardCharsets.UTF_8),
+            given.toString().getBytes(StandardCharsets.UTF_8)
+        };
+    }
+}
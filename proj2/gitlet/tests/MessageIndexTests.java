@@ -0,0 +1,156 @@
+package gitlet.tests;
+
+import gitlet.Commit;
+import gitlet.MessageIndex;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class MessageIndexTests {
+
+    File testFolder;
+    File listFile;
+    File indexFile;
+    ObjectStore<Commit> commitStore;
+    MessageIndex index;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        File commitFolder = Utils.join(testFolder, "commits");
+        commitFolder.mkdir();
+        commitStore = new ObjectStore<>(commitFolder, Commit.class);
+        listFile = Utils.join(testFolder, "commit-list");
+        indexFile = Utils.join(testFolder, "message-index");
+        index = new MessageIndex(listFile, indexFile, commitStore);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    /** Stores a commit with the given message and time, adding it to the index, and returns its id */
+    private String commit(String message, long time) {
+        Commit commit = new Commit(message, new Date(time), "", "", new TreeMap<>());
+        commitStore.persist(commit);
+        index.add(commit);
+        return commit.digest();
+    }
+
+    private List<String> ids(List<MessageIndex.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (MessageIndex.Entry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void findsExactMessagesOnly() {
+        String a = commit("Fix the parser", 1);
+        String b = commit("fix the PARSER", 2);
+        String c = commit("Fix the parser", 3);
+        commit("Fix the lexer", 4);
+        String blank = commit("...", 5);
+
+        assertEquals(new TreeSet<>(List.of(a, c)), index.find("Fix the parser"));
+        assertEquals(Set.of(b), index.find("fix the PARSER"));
+        assertEquals(Set.of(blank), index.find("..."));
+        assertTrue(index.find("Fix the").isEmpty());
+        assertTrue(index.find("unknown").isEmpty());
+    }
+
+    @Test
+    public void listsCommitsByTimestampAcrossInstances() {
+        String second = commit("second", 20);
+        String first = commit("first", 10);
+        String third = commit("third", 30);
+
+        MessageIndex reloaded = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(List.of(first, second, third), ids(reloaded.byTimestamp()));
+        assertEquals(Set.of(second), reloaded.find("second"));
+    }
+
+    @Test
+    public void mergesManyAppendedWords() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            ids.add(commit("change number " + i, i)); // 3 words each, enough to merge the tail
+        }
+        MessageIndex reloaded = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(Set.of(ids.get(123)), reloaded.find("change number 123"));
+        assertEquals(600, reloaded.byTimestamp().size());
+    }
+
+    @Test
+    public void rebuildsMissingFiles() {
+        String a = commit("first", 1);
+        String b = commit("second", 2);
+        indexFile.delete();
+
+        MessageIndex rebuilt = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(Set.of(b), rebuilt.find("second"));
+        assertEquals(List.of(a, b), ids(rebuilt.byTimestamp()));
+    }
+
+    @Test
+    public void ignoresPartlyWrittenEntries() throws IOException {
+        String a = commit("first", 1);
+        try (RandomAccessFile list = new RandomAccessFile(listFile, "rw")) {
+            list.seek(list.length());
+            list.write(new byte[] {1, 2, 3}); // an interrupted append
+        }
+        MessageIndex reloaded = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(List.of(a), ids(reloaded.byTimestamp()));
+
+        Commit second = new Commit("second", new Date(2), "", "", new TreeMap<>());
+        commitStore.persist(second);
+        reloaded.add(second);
+        MessageIndex again = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(List.of(a, second.digest()), ids(again.byTimestamp()));
+    }
+
+    @Test
+    public void commitInterruptedBeforeListingIsAddedAgain() throws IOException {
+        String a = commit("first", 1);
+        long listed = listFile.length();
+        String b = commit("second", 2);
+        try (RandomAccessFile list = new RandomAccessFile(listFile, "rw")) {
+            list.setLength(listed); // interrupted after indexing its words, before listing it
+        }
+        MessageIndex reloaded = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(List.of(a), ids(reloaded.byTimestamp()));
+        assertEquals("Indexed words should already find the commit", Set.of(b), reloaded.find("second"));
+
+        reloaded.add(commitStore.read(b));
+        MessageIndex again = new MessageIndex(listFile, indexFile, commitStore);
+        assertEquals(List.of(a, b), ids(again.byTimestamp()));
+        assertEquals(Set.of(b), again.find("second"));
+    }
+
+    @Test
+    public void listsOnlyStoredCommits() {
+        String a = commit("stored", 1);
+        Commit unstored = new Commit("unstored", new Date(2), "", "", new TreeMap<>());
+        index.add(unstored); // interrupted before the commit was stored
+        assertEquals(List.of(a), ids(index.byTimestamp()));
+        assertEquals(Set.of(), index.find("unstored"));
+    }
+}
@@ -0,0 +1,218 @@
+package gitlet.tests;
+
+import gitlet.Codecs;
+import gitlet.Commit;
+import gitlet.DeflateCodec;
+import gitlet.ObjectStore;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class ObjectStoreTests {
+
+    File testFolder;
+    File commitFolder;
+    ObjectStore<Commit> commitStore;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        commitFolder = Utils.join(testFolder, "commits");
+        commitFolder.mkdir();
+        commitStore = new ObjectStore<>(commitFolder, Commit.class);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private List<Commit> persistCommits(int count, String message) {
+        List<Commit> commits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Commit commit = new Commit(message + i, new Date(i), "", new TreeMap<>());
+            commitStore.persist(commit);
+            commits.add(commit);
+        }
+        return commits;
+    }
+
+    /** Returns the ids that start with the prefix, in sorted order */
+    private List<String> matching(List<Commit> commits, String prefix) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (Commit commit : commits) {
+            if (commit.digest().startsWith(prefix)) {
+                ids.add(commit.digest());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    @Test
+    public void prefixesMatchLooseAndPackedObjects() {
+        List<Commit> commits = persistCommits(300, "packed");
+        commitStore.repack();
+        commits.addAll(persistCommits(300, "loose"));
+
+        for (String prefix : List.of("a", "3f", "0", "e7c")) {
+            assertEquals(matching(commits, prefix), commitStore.withPrefix(prefix, Integer.MAX_VALUE));
+        }
+        String id = commits.get(42).digest();
+        assertEquals(List.of(id), commitStore.withPrefix(id.substring(0, 12), 2));
+        assertEquals(List.of(id), commitStore.withPrefix(id, 2));
+        assertEquals("Should stop at the limit", 2, commitStore.withPrefix("", 2).size());
+        assertTrue("Non-hex prefixes match nothing", commitStore.withPrefix("xyz", 2).isEmpty());
+    }
+
+    @Test
+    public void repackMovesLooseObjectsIntoPack() {
+        List<Commit> commits = persistCommits(100, "commit");
+        assertEquals("All loose objects should be packed", 100, commitStore.repack());
+        assertEquals("No loose objects should remain", 0, Utils.plainFilenamesIn(commitFolder).size());
+
+        ObjectStore<Commit> freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertTrue("Packed objects should be found", freshStore.contains(commit.digest()));
+            assertEquals("Packed objects should be readable",
+                    commit.getMessage(), freshStore.read(commit.digest()).getMessage());
+        }
+        assertFalse("Missing objects should not be found", freshStore.contains(Utils.sha1("missing")));
+        assertNull("Missing objects should read as null", freshStore.read(Utils.sha1("missing")));
+    }
+
+    @Test
+    public void repackMergesExistingPacks() {
+        List<Commit> commits = persistCommits(10, "first");
+        commitStore.repack();
+        commits.addAll(persistCommits(10, "second"));
+        assertEquals("Only the new loose objects should be packed", 10, commitStore.repack());
+        assertEquals("Existing packs should be merged into one", 2,
+                Utils.plainFilenamesIn(Utils.join(commitFolder, "pack")).size());
+
+        ObjectStore<Commit> freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertNotNull("Objects from every pack should be readable", freshStore.read(commit.digest()));
+        }
+    }
+
+    @Test
+    public void iteratesOverLooseAndPackedObjects() {
+        persistCommits(20, "packed");
+        commitStore.repack();
+        persistCommits(5, "loose");
+
+        Set<String> messages = new HashSet<>();
+        for (Commit commit : new ObjectStore<>(commitFolder, Commit.class)) {
+            messages.add(commit.getMessage());
+        }
+        assertEquals("All loose and packed objects should be iterated over", 25, messages.size());
+    }
+
+    @Test
+    public void receiveCopiesObjectsIntoANewPack() {
+        List<Commit> commits = persistCommits(10, "sent");
+        commitStore.repack();
+        File otherFolder = Utils.join(testFolder, "other");
+        otherFolder.mkdir();
+        ObjectStore<Commit> otherStore = new ObjectStore<>(otherFolder, Commit.class);
+        List<String> ids = new ArrayList<>();
+        for (Commit commit : commits.subList(0, 5)) {
+            ids.add(commit.digest());
+        }
+        otherStore.receive(commitStore, ids);
+
+        ObjectStore<Commit> freshStore = new ObjectStore<>(otherFolder, Commit.class);
+        for (int i = 0; i < commits.size(); i++) {
+            assertEquals("Only the objects sent should be received",
+                    i < 5, freshStore.contains(commits.get(i).digest()));
+        }
+        assertEquals("Received objects should be readable",
+                commits.get(0).getMessage(), freshStore.read(ids.get(0)).getMessage());
+        assertEquals("Received objects should not be stored loose", 0, Utils.plainFilenamesIn(otherFolder).size());
+    }
+
+    @Test
+    public void sweepDeletesObjectsNotKept() {
+        List<Commit> commits = persistCommits(10, "swept");
+        commitStore.repack();
+        List<Commit> loose = persistCommits(4, "loose");
+        Set<String> kept = new HashSet<>();
+        for (Commit commit : commits.subList(0, 5)) {
+            kept.add(commit.digest());
+        }
+        kept.add(loose.get(0).digest());
+        ObjectStore.Swept swept = commitStore.sweep(kept::contains);
+
+        assertEquals("Objects not kept should be deleted", 8, swept.getDeleted().size());
+        assertTrue("Deleting objects should reclaim bytes", swept.getBytesReclaimed() > 0);
+        ObjectStore<Commit> freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertEquals("Only kept objects should remain",
+                    kept.contains(commit.digest()), freshStore.contains(commit.digest()));
+        }
+        assertEquals("Kept objects should be readable",
+                loose.get(0).getMessage(), freshStore.read(loose.get(0).digest()).getMessage());
+        assertEquals("Kept objects should be packed", 0, Utils.plainFilenamesIn(commitFolder).size());
+    }
+
+    @Test
+    public void doesNotRewriteStoredObjects() {
+        Commit commit = persistCommits(1, "once").get(0);
+        File file = Utils.join(commitFolder, commit.digest());
+        assertTrue("Object should be stored loose", file.setLastModified(0));
+        commitStore.persist(commit);
+        assertEquals("Stored object should not be rewritten", 0, file.lastModified());
+    }
+
+    @Test
+    public void readsDetectHowEachObjectWasStored() {
+        // Objects written before codecs existed are plain serialized files
+        Commit legacy = new Commit("legacy", new Date(0), "", new TreeMap<>());
+        Utils.writeObject(Utils.join(commitFolder, legacy.digest()), legacy);
+        List<Commit> commits = new ArrayList<>(List.of(legacy));
+        commitStore.setCodec(Codecs.NONE);
+        commits.addAll(persistCommits(5, "uncompressed"));
+        commitStore.setCodec(new DeflateCodec(9));
+        commits.addAll(persistCommits(5, "compressed"));
+
+        ObjectStore<Commit> freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertEquals("Objects should be readable whatever they were stored with",
+                    commit.getMessage(), freshStore.read(commit.digest()).getMessage());
+        }
+        freshStore.repack();
+        freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertEquals("Packed objects should keep how they were stored",
+                    commit.getMessage(), freshStore.read(commit.digest()).getMessage());
+        }
+    }
+
+    @Test
+    public void migrateRewritesLooseAndPackedObjects() {
+        List<Commit> commits = persistCommits(10, "packed");
+        commitStore.repack();
+        commits.addAll(persistCommits(10, "loose"));
+        assertEquals("Every object should be rewritten", 20, commitStore.migrate());
+
+        ObjectStore<Commit> freshStore = new ObjectStore<>(commitFolder, Commit.class);
+        for (Commit commit : commits) {
+            assertEquals("Rewritten objects should stay readable",
+                    commit.getMessage(), freshStore.read(commit.digest()).getMessage());
+        }
+    }
+}
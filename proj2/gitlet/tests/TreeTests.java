@@ -0,0 +1,121 @@
+package gitlet.tests;
+
+import gitlet.Commit;
+import gitlet.CommitFormat;
+import gitlet.Main;
+import gitlet.ObjectStore;
+import gitlet.Tree;
+import gitlet.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class TreeTests {
+
+    File testFolder;
+    File treeFolder;
+    ObjectStore<Tree> savedTrees;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+        treeFolder = Utils.join(testFolder, "trees");
+        treeFolder.mkdir();
+        savedTrees = Main.TREES;
+        Main.TREES = new ObjectStore<>(treeFolder, Tree.class);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Main.TREES = savedTrees;
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    /** Returns the id of a tree holding a file for each of the paths */
+    private String treeOf(String... paths) {
+        TreeMap<String, String> files = new TreeMap<>();
+        for (String path : paths) {
+            files.put(path, Utils.sha1(path));
+        }
+        return Tree.update(Tree.emptyId(), files);
+    }
+
+    private int storedTrees() {
+        return Utils.plainFilenamesIn(treeFolder).size();
+    }
+
+    @Test
+    public void flattenListsEveryFile() {
+        String treeId = treeOf("a.txt", "src/b.txt", "src/main/c.txt", "src/main/d.txt");
+        TreeMap<String, String> files = Tree.flatten(treeId);
+        assertEquals(List.of("a.txt", "src/b.txt", "src/main/c.txt", "src/main/d.txt"),
+                new ArrayList<>(files.keySet()));
+        assertEquals(Utils.sha1("src/main/c.txt"), files.get("src/main/c.txt"));
+    }
+
+    @Test
+    public void changingOneFileOnlyWritesTheTreesOnItsPath() {
+        String treeId = treeOf("a.txt", "docs/readme.txt", "src/main/c.txt", "src/test/t.txt");
+        int before = storedTrees();
+        TreeMap<String, String> change = new TreeMap<>(Map.of("src/main/c.txt", Utils.sha1("changed")));
+        String newTreeId = Tree.update(treeId, change);
+        assertEquals("Only the root, src and src/main trees should be written", before + 3, storedTrees());
+
+        Tree oldRoot = Main.TREES.read(treeId);
+        Tree newRoot = Main.TREES.read(newTreeId);
+        assertEquals("Unchanged folders should share their tree",
+                oldRoot.getTrees().get("docs"), newRoot.getTrees().get("docs"));
+        assertEquals(Main.TREES.read(oldRoot.getTrees().get("src")).getTrees().get("test"),
+                Main.TREES.read(newRoot.getTrees().get("src")).getTrees().get("test"));
+    }
+
+    @Test
+    public void removingEveryFileRemovesTheFolder() {
+        String treeId = treeOf("a.txt", "src/b.txt");
+        TreeMap<String, String> removal = new TreeMap<>();
+        removal.put("src/b.txt", null);
+        String newTreeId = Tree.update(treeId, removal);
+        assertEquals("Empty folders should be removed", treeOf("a.txt"), newTreeId);
+        assertTrue(Main.TREES.read(newTreeId).getTrees().isEmpty());
+    }
+
+    @Test
+    public void diffOnlyReportsChangedFiles() {
+        String from = treeOf("a.txt", "docs/readme.txt", "src/b.txt", "src/old.txt");
+        TreeMap<String, String> changes = new TreeMap<>();
+        changes.put("src/b.txt", Utils.sha1("changed"));
+        changes.put("src/old.txt", null);
+        changes.put("src/new/n.txt", Utils.sha1("new"));
+        String to = Tree.update(from, changes);
+        assertEquals(changes, Tree.diff(from, to));
+        assertTrue("Identical trees should have no differences", Tree.diff(to, to).isEmpty());
+
+        // Commits holding trees and flat maps of the same files compare the same way
+        Commit treeCommit = new Commit("tree", new Date(0), "", "", to);
+        Commit flatCommit = new Commit("flat", new Date(0), "", Tree.flatten(from));
+        assertEquals(changes, flatCommit.diff(treeCommit));
+    }
+
+    @Test
+    public void commitsHoldingTreesAreEncoded() {
+        String treeId = treeOf("a.txt", "src/b.txt");
+        Commit commit = new Commit("tree", new Date(1), Utils.sha1("parent"), "", treeId);
+        Commit decoded = new CommitFormat().decode(new CommitFormat().encode(commit));
+        assertEquals(commit.digest(), decoded.digest());
+        assertEquals(treeId, decoded.getTreeId());
+        assertEquals(Set.of("a.txt", "src/b.txt"), decoded.getBlobs().keySet());
+    }
+}
@@ -0,0 +1,79 @@
+package gitlet.tests;
+
+import gitlet.UnifiedDiff;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class UnifiedDiffTests {
+
+    private static final String NL = System.lineSeparator();
+
+    private static UnifiedDiff.Source source(String contents) {
+        return contents == null ? null
+                : () -> new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String diff(String from, String to) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        UnifiedDiff.print("f", source(from), source(to), out);
+        return bytes.toString(StandardCharsets.UTF_8).replace(NL, "\n");
+    }
+
+    /** Returns the lines 1 to n, each on a line of its own */
+    private static String numbers(int n) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= n; i++) {
+            lines.append(i).append('\n');
+        }
+        return lines.toString();
+    }
+
+    @Test
+    public void showsChangesWithThreeLinesOfContext() {
+        String to = numbers(20).replace("\n10\n", "\nten\n");
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -7,7 +7,7 @@\n 7\n 8\n 9\n-10\n+ten\n 11\n 12\n 13\n", diff(numbers(20), to));
+    }
+
+    @Test
+    public void joinsHunksWhoseContextOverlaps() {
+        String near = numbers(20).replace("\n5\n", "\nfive\n").replace("\n11\n", "\neleven\n");
+        assertEquals(1, diff(numbers(20), near).split("@@ ").length - 1);
+        String far = numbers(20).replace("\n4\n", "\nfour\n").replace("\n12\n", "\ntwelve\n");
+        assertEquals(2, diff(numbers(20), far).split("@@ ").length - 1);
+    }
+
+    @Test
+    public void clipsContextAtTheEndsOfTheFile() {
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -1,3 +1,4 @@\n+0\n 1\n 2\n 3\n", diff(numbers(5), "0\n" + numbers(5)));
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -2,4 +2,3 @@\n 2\n 3\n 4\n-5\n", diff(numbers(5), numbers(4)));
+    }
+
+    @Test
+    public void showsAddedAndRemovedFilesAgainstDevNull() {
+        assertEquals("diff --git a/f b/f\n--- /dev/null\n+++ b/f\n@@ -0,0 +1,2 @@\n+1\n+2\n",
+                diff(null, numbers(2)));
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ /dev/null\n@@ -1,2 +0,0 @@\n-1\n-2\n",
+                diff(numbers(2), null));
+    }
+
+    @Test
+    public void marksLinesWithoutANewline() {
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -1,2 +1,2 @@\n 1\n-2\n\\ No newline at end of file\n+2\n", diff("1\n2", "1\n2\n"));
+    }
+
+    @Test
+    public void doesNotDiffBinaryFiles() {
+        assertEquals("diff --git a/f b/f\nBinary files a/f and b/f differ\n", diff("a\0b\n", "a\0c\n"));
+    }
+}
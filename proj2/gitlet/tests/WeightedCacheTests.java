@@ -0,0 +1,69 @@
+package gitlet.tests;
+
+import gitlet.ObjectCache;
+import gitlet.WeightedCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedCacheTests {
+
+    @Test
+    public void evictsLeastRecentlyUsedByWeight() {
+        WeightedCache<byte[]> cache = new WeightedCache<>(10, bytes -> bytes.length);
+        byte[] a = new byte[4];
+        byte[] b = new byte[4];
+        byte[] c = new byte[4];
+        cache.put("a", a);
+        cache.put("b", b);
+        cache.get("a"); // a is now more recently used than b
+        cache.put("c", c);
+
+        ObjectCache.Stats stats = cache.stats();
+        assertEquals("Should evict one object to fit", 1, stats.evictions);
+        assertEquals(2, stats.size);
+        assertEquals(8, stats.weight);
+        assertSame(a, cache.get("a"));
+        assertSame(c, cache.get("c"));
+    }
+
+    @Test
+    public void evictedObjectsAreFoundThroughSoftReferences() {
+        WeightedCache<String> cache = WeightedCache.ofCount(1);
+        String first = new String("first");
+        cache.put("first", first);
+        cache.put("second", "second");
+        assertSame("Evicted object should still be reachable", first, cache.get("first"));
+        ObjectCache.Stats stats = cache.stats();
+        assertEquals(1, stats.softHits);
+        assertEquals(1, stats.size);
+    }
+
+    @Test
+    public void objectsHeavierThanTheCacheAreHeldSoftly() {
+        WeightedCache<byte[]> cache = new WeightedCache<>(10, bytes -> bytes.length);
+        cache.put("small", new byte[5]);
+        cache.put("large", new byte[20]);
+        ObjectCache.Stats stats = cache.stats();
+        assertEquals("Large object should not displace the small one", 1, stats.size);
+        assertEquals(5, stats.weight);
+        assertNotNull(cache.get("small"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        WeightedCache<String> cache = WeightedCache.ofCount(10);
+        cache.put("a", "a");
+        cache.get("a");
+        cache.get("a");
+        assertNull(cache.get("b"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+
+        ObjectCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(0.5, stats.hitRate(), 1e-9);
+        assertEquals(0, stats.size);
+    }
+}
@@ -0,0 +1,88 @@
+package gitlet.tests;
+
+import gitlet.Utils;
+import gitlet.WriteBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Main.CWD;
+
+/** Times the writes of simulated commits under each durability: each commit writes its blobs,
+ *  trees and commit object in one batch, then moves a branch file on its own, as
+ *  Repository.commit does. Strict forces every file and syncs its folder as it is written,
+ *  so comparing it with batch shows what batching saves.
+ *  Usage: java gitlet.tests.WriteBatchSpeedTest [COMMITS] [FILES_PER_COMMIT] [FILE_SIZE]
+ *  @author Jordan Kilfoy
+ */
+public class WriteBatchSpeedTest {
+
+    /** Rounds run before timing, so writes are measured once the JIT has compiled them */
+    private static final int WARMUP_ROUNDS = 1;
+
+    private static final File TEST_FOLDER = Utils.join(CWD, "write-batch-speed-test");
+
+    public static void main(String[] args) throws IOException {
+        int numCommits = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int numFiles = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int fileSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        System.out.printf("%d commits of %d files of %d bytes; latency per commit%n", numCommits, numFiles, fileSize);
+        try {
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                for (WriteBatch.Durability durability : WriteBatch.Durability.values()) {
+                    long[] times = commits(durability, numCommits, numFiles, fileSize);
+                    if (round == WARMUP_ROUNDS) {
+                        print(durability.name().toLowerCase(), times);
+                    }
+                }
+            }
+        } finally {
+            Files.walk(TEST_FOLDER.toPath())
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** Writes the simulated commits, returning the time each took */
+    private static long[] commits(WriteBatch.Durability durability, int numCommits, int numFiles, int fileSize) {
+        Random random = new Random(20);
+        byte[] contents = new byte[fileSize];
+        for (String folder : new String[] {"tracked_blobs", "trees", "commits", "branches"}) {
+            Utils.join(TEST_FOLDER, folder).mkdirs();
+        }
+        long[] times = new long[numCommits];
+        for (int commit = 0; commit < numCommits; commit++) {
+            long start = System.nanoTime();
+            try (WriteBatch batch = WriteBatch.begin(durability)) {
+                for (int i = 0; i < numFiles; i++) {
+                    random.nextBytes(contents);
+                    String folder = i == numFiles - 1 ? "commits" : i % 4 == 0 ? "trees" : "tracked_blobs";
+                    WriteBatch.write(Utils.join(TEST_FOLDER, folder, Utils.sha1(contents)), contents);
+                }
+                batch.commit();
+            }
+            try (WriteBatch batch = WriteBatch.begin(durability)) {
+                WriteBatch.write(Utils.join(TEST_FOLDER, "branches", "master"), contents);
+                batch.commit();
+            }
+            times[commit] = System.nanoTime() - start;
+        }
+        return times;
+    }
+
+    /** Prints the median and worst of the times */
+    private static void print(String label, long[] times) {
+        Arrays.sort(times);
+        System.out.printf("%-7s median %8.2f ms, max %8.2f ms%n", label,
+                times[times.length / 2] / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                times[times.length - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,127 @@
+package gitlet.tests;
+
+import gitlet.Utils;
+import gitlet.WriteBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static gitlet.Main.CWD;
+import static org.junit.Assert.*;
+
+public class WriteBatchTests {
+
+    File testFolder;
+
+    @Before
+    public void init() {
+        testFolder = Utils.join(CWD, "test");
+        testFolder.mkdir();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.walk(testFolder.toPath())
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the names of the files in the test folder */
+    private List<String> files() {
+        List<String> names = Utils.plainFilenamesIn(testFolder);
+        return names == null ? new ArrayList<>() : names;
+    }
+
+    @Test
+    public void batchedFilesAppearOnCommit() {
+        File a = Utils.join(testFolder, "a");
+        File b = Utils.join(testFolder, "b");
+        List<String> written = new ArrayList<>();
+        try (WriteBatch batch = WriteBatch.begin(WriteBatch.Durability.BATCH)) {
+            WriteBatch.write(a, bytes("first"), () -> written.add("a"));
+            WriteBatch.write(b, bytes("second"), () -> written.add("b"));
+            assertFalse("Files should not be in place before the batch commits", a.exists());
+            assertTrue(WriteBatch.isPending(a));
+            assertEquals("first", new String(WriteBatch.pending(a), StandardCharsets.UTF_8));
+            assertTrue(written.isEmpty());
+            batch.commit();
+        }
+        assertEquals("first", Utils.readContentsAsString(a));
+        assertEquals("second", Utils.readContentsAsString(b));
+        assertEquals(List.of("a", "b"), written);
+        assertFalse(WriteBatch.isPending(a));
+        assertEquals("No temporary files should be left", List.of("a", "b"), files());
+    }
+
+    @Test
+    public void laterWritesToAFileReplaceEarlierOnes() {
+        File a = Utils.join(testFolder, "a");
+        try (WriteBatch batch = WriteBatch.begin(WriteBatch.Durability.BATCH)) {
+            WriteBatch.write(a, bytes("old"));
+            WriteBatch.write(a, bytes("new"));
+            batch.commit();
+        }
+        assertEquals("new", Utils.readContentsAsString(a));
+        assertEquals(List.of("a"), files());
+    }
+
+    @Test
+    public void closingWithoutCommitDiscardsTheBatch() {
+        File a = Utils.join(testFolder, "a");
+        try (WriteBatch batch = WriteBatch.begin(WriteBatch.Durability.BATCH)) {
+            WriteBatch.write(a, bytes("lost"));
+        }
+        assertFalse(a.exists());
+        assertTrue(files().isEmpty());
+        // Files written after the batch ends are written on their own
+        WriteBatch.write(a, bytes("kept"));
+        assertEquals("kept", Utils.readContentsAsString(a));
+    }
+
+    @Test
+    public void manyFilesStayWithinTheOpenChannelLimit() {
+        try (WriteBatch batch = WriteBatch.begin(WriteBatch.Durability.BATCH)) {
+            for (int i = 0; i < 1000; i++) {
+                WriteBatch.write(Utils.join(testFolder, "f" + i), bytes("file " + i));
+            }
+            batch.commit();
+        }
+        assertEquals(1000, files().size());
+        assertEquals("file 999", Utils.readContentsAsString(Utils.join(testFolder, "f999")));
+    }
+
+    @Test
+    public void strictAndNoneWriteEachFileAtOnce() {
+        for (WriteBatch.Durability durability : List.of(WriteBatch.Durability.STRICT, WriteBatch.Durability.NONE)) {
+            File a = Utils.join(testFolder, durability.name());
+            try (WriteBatch batch = WriteBatch.begin(durability)) {
+                WriteBatch.write(a, bytes("contents"));
+                assertTrue(a.exists());
+                batch.commit();
+            }
+            assertEquals("contents", Utils.readContentsAsString(a));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batchesDoNotNest() {
+        try (WriteBatch outer = WriteBatch.begin(WriteBatch.Durability.BATCH);
+             WriteBatch inner = WriteBatch.begin(WriteBatch.Durability.BATCH)) {
+            fail();
+        }
+    }
+}